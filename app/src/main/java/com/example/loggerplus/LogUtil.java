@@ -29,7 +29,7 @@ public class LogUtil {
 
     public static void init(Context context){
 
-        Logger.layerNum = 1;
+        Logger.addWrapperClass(LogUtil.class);
 
         //打日志到Logcat
         FormatStrategy prettyFormat = PrettyFormatStrategy.newBuilder()
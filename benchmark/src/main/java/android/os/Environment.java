@@ -0,0 +1,16 @@
+package android.os;
+
+import java.io.File;
+
+/**
+ * JVM stand-in for the benchmarks.
+ */
+public final class Environment {
+
+  private Environment() {
+  }
+
+  public static File getExternalStorageDirectory() {
+    return new File(System.getProperty("java.io.tmpdir"));
+  }
+}
@@ -0,0 +1,44 @@
+package android.os;
+
+/**
+ * JVM stand-in for the benchmarks, see {@link Looper}.
+ */
+public class Handler {
+
+  private final Looper looper;
+
+  public Handler(Looper looper) {
+    this.looper = looper;
+  }
+
+  public void handleMessage(Message msg) {
+  }
+
+  public final Message obtainMessage(int what, Object obj) {
+    Message message = new Message();
+    message.what = what;
+    message.obj = obj;
+    return message;
+  }
+
+  public final boolean sendEmptyMessage(int what) {
+    return sendEmptyMessageDelayed(what, 0);
+  }
+
+  public final boolean sendEmptyMessageDelayed(int what, long delayMillis) {
+    return sendMessageDelayed(obtainMessage(what, null), delayMillis);
+  }
+
+  public final boolean post(Runnable r) {
+    Message message = new Message();
+    message.callback = r;
+    return sendMessageDelayed(message, 0);
+  }
+
+  public final boolean sendMessageDelayed(Message msg, long delayMillis) {
+    msg.target = this;
+    msg.when = System.nanoTime() + delayMillis * 1000000L;
+    looper.queue.add(new Looper.Entry(msg));
+    return true;
+  }
+}
@@ -0,0 +1,23 @@
+package android.os;
+
+/**
+ * JVM stand-in for the benchmarks, see {@link Looper}.
+ */
+public class HandlerThread extends Thread {
+
+  private final Looper looper = new Looper();
+
+  public HandlerThread(String name) {
+    super(name);
+    setDaemon(true);
+  }
+
+  public Looper getLooper() {
+    return looper;
+  }
+
+  @Override
+  public void run() {
+    looper.loop();
+  }
+}
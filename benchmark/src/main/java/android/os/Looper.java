@@ -0,0 +1,51 @@
+package android.os;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JVM stand-in for the benchmarks: a delay queue drained by the thread of a {@link HandlerThread}.
+ */
+public final class Looper {
+
+  final DelayQueue<Entry> queue = new DelayQueue<>();
+
+  Looper() {
+  }
+
+  void loop() {
+    for (;;) {
+      Message message;
+      try {
+        message = queue.take().message;
+      } catch (InterruptedException e) {
+        return;
+      }
+      if (message.callback != null) {
+        message.callback.run();
+      } else {
+        message.target.handleMessage(message);
+      }
+    }
+  }
+
+  static final class Entry implements Delayed {
+    final Message message;
+
+    Entry(Message message) {
+      this.message = message;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(message.when - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      long diff = message.when - ((Entry) other).message.when;
+      return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package com.example.loggerpluslib;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.File;
+
+/**
+ * Runs the benchmarks at 1, 4 and 16 threads. Throughput is reported in ops/us, allocation per
+ * operation by the gc profiler as gc.alloc.rate.norm (bytes/op).
+ *
+ * <pre><code>
+ *   ./gradlew :benchmark:jmh [-Pinclude=LoggerBenchmark]
+ * </code></pre>
+ */
+public final class BenchmarkMain {
+
+  private static final int[] THREADS = {1, 4, 16};
+
+  private BenchmarkMain() {
+  }
+
+  /**
+   * @param args benchmark name pattern, folder of the CSV results
+   */
+  public static void main(String[] args) throws RunnerException {
+    String include = args.length > 0 ? args[0] : ".*Benchmark.*";
+    File resultFolder = new File(args.length > 1 ? args[1] : "build/jmh");
+    resultFolder.mkdirs();
+
+    for (int threads : THREADS) {
+      Options options = new OptionsBuilder()
+          .include(include)
+          .threads(threads)
+          .forks(1)
+          .warmupIterations(3)
+          .warmupTime(TimeValue.seconds(1))
+          .measurementIterations(5)
+          .measurementTime(TimeValue.seconds(1))
+          .addProfiler(GCProfiler.class)
+          .resultFormat(ResultFormatType.CSV)
+          .result(new File(resultFolder, "results-" + threads + "-threads.csv").getPath())
+          .build();
+      new Runner(options).run();
+    }
+  }
+}
@@ -0,0 +1,436 @@
+package com.example.loggerpluslib;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load test of the disk strategies: producer threads log as fast as they can into a
+ * temp folder while a reader tails the written files.
+ *
+ * <p>Every log carries its producer, a sequence number and the time it was handed to the strategy.
+ * Per run one CSV row is written with</p>
+ * <ul>
+ *   <li>events/s on the calling side and until the last log was on disk</li>
+ *   <li>p50/p99/p999/max of the time spent in {@link LogStrategy#log}</li>
+ *   <li>p50/p99/p999/max of the lag until the log was read back from the file, the reader polls
+ *   every {@link #POLL_MILLIS} ms</li>
+ *   <li>bytes on disk per event, logs missing on disk and logs of a producer out of order</li>
+ * </ul>
+ *
+ * <pre><code>
+ *   ./gradlew :benchmark:loadTest -PloadArgs="--strategy rolling --threads 1,4,16 --sizes 100,1000"
+ * </code></pre>
+ */
+public final class DiskLoadGenerator {
+
+  private static final Charset CHARSET = Charset.forName("UTF-8");
+
+  private static final long POLL_MILLIS = 1;
+
+  /**
+   * The run ends once no more logs arrived for this long after the producers finished
+   */
+  private static final long IDLE_TIMEOUT_MILLIS = 5000;
+
+  private static final String HEADER = "strategy,policy,threads,messageSize,events,"
+      + "callerEventsPerSec,diskEventsPerSec,"
+      + "callerP50Us,callerP99Us,callerP999Us,callerMaxUs,"
+      + "lagP50Us,lagP99Us,lagP999Us,lagMaxUs,"
+      + "bytesPerEvent,missing,orderViolations";
+
+  private final String strategy;
+  private final OverflowPolicy policy;
+  private final int threads;
+  private final int messageSize;
+  private final int eventsPerThread;
+
+  private DiskLoadGenerator(String strategy, OverflowPolicy policy, int threads, int messageSize,
+                            int eventsPerThread) {
+    this.strategy = strategy;
+    this.policy = policy;
+    this.threads = threads;
+    this.messageSize = messageSize;
+    this.eventsPerThread = eventsPerThread;
+  }
+
+  /**
+   * Options, lists are comma separated:
+   * <pre>
+   *   --strategy date|rolling|mmap   (default date)
+   *   --policy   an OverflowPolicy   (default DROP_BY_PRIORITY, ignored by mmap)
+   *   --threads  1,4,16
+   *   --sizes    100,1000            bytes per log
+   *   --events   100000              logs per thread
+   *   --out      results.csv         rows are appended, the header is written once
+   * </pre>
+   */
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new HashMap<>();
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      if (!args[i].startsWith("--")) {
+        throw new IllegalArgumentException("Unexpected argument " + args[i]);
+      }
+      options.put(args[i].substring(2), args[i + 1]);
+    }
+    String strategy = option(options, "strategy", "date");
+    OverflowPolicy policy = OverflowPolicy.valueOf(option(options, "policy", OverflowPolicy.DROP_BY_PRIORITY.name()));
+    int[] threadCounts = parseInts(option(options, "threads", "1,4,16"));
+    int[] sizes = parseInts(option(options, "sizes", "100,1000"));
+    int events = Integer.parseInt(option(options, "events", "100000"));
+    String out = options.get("out");
+
+    Writer writer = null;
+    if (out != null) {
+      File outFile = new File(out);
+      File folder = outFile.getAbsoluteFile().getParentFile();
+      if (folder != null) {
+        folder.mkdirs();
+      }
+      boolean newFile = !outFile.exists() || outFile.length() == 0;
+      writer = new OutputStreamWriter(new FileOutputStream(outFile, true), CHARSET);
+      if (newFile) {
+        writer.write(HEADER + "\n");
+      }
+    }
+    System.out.println(HEADER);
+    try {
+      for (int threads : threadCounts) {
+        for (int size : sizes) {
+          String row = new DiskLoadGenerator(strategy, policy, threads, size, events).run();
+          System.out.println(row);
+          if (writer != null) {
+            writer.write(row + "\n");
+            writer.flush();
+          }
+        }
+      }
+    } finally {
+      if (writer != null) {
+        writer.close();
+      }
+    }
+  }
+
+  /**
+   * @return the CSV row of this run
+   */
+  private String run() throws Exception {
+    File root = File.createTempFile("loggerplus-load", "");
+    root.delete();
+    File folder = new File(root, "logs");
+    folder.mkdirs();
+    try {
+      return run(createStrategy(folder.getPath()), folder);
+    } finally {
+      delete(root);
+    }
+  }
+
+  private LogStrategy createStrategy(String folderPath) {
+    if ("mmap".equals(strategy)) {
+      return new MmapLogStrategy(folderPath);
+    }
+    DiskLogStrategy.Builder builder = DiskLogStrategy.newBuilder()
+        .logDiskPath(folderPath)
+        .overflowPolicy(policy);
+    if ("rolling".equals(strategy)) {
+      // large enough that retention never deletes a file the reader has not finished
+      builder.fileStrategy(RollingFileStrategy.newBuilder()
+          .folderPath(folderPath)
+          .maxTotalSize(Long.MAX_VALUE)
+          .maxFileCount(Integer.MAX_VALUE)
+          .build());
+    } else if (!"date".equals(strategy)) {
+      throw new IllegalArgumentException("Unknown strategy " + strategy);
+    }
+    return builder.build();
+  }
+
+  private String run(final LogStrategy logStrategy, File folder) throws Exception {
+    final long[][] callerNanos = new long[threads][eventsPerThread];
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(threads);
+    final String padding = padding(messageSize);
+
+    Tailer tailer = new Tailer(folder, threads, threads * eventsPerThread);
+    Thread tailerThread = new Thread(tailer, "LoadTailer");
+    tailerThread.start();
+
+    for (int t = 0; t < threads; t++) {
+      final int producer = t;
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          long[] latencies = callerNanos[producer];
+          StringBuilder message = new StringBuilder(messageSize + 1);
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int seq = 0; seq < eventsPerThread; seq++) {
+            long before = System.nanoTime();
+            message.setLength(0);
+            message.append(producer).append(',').append(seq).append(',').append(before).append(',');
+            int rest = messageSize - message.length() - 1;
+            if (rest > 0) {
+              message.append(padding, 0, rest);
+            }
+            message.append('\n');
+            logStrategy.log(Logger.DEBUG, "Load", message.toString());
+            latencies[seq] = System.nanoTime() - before;
+          }
+          done.countDown();
+        }
+      }, "LoadProducer-" + t);
+      thread.start();
+    }
+
+    long startNanos = System.nanoTime();
+    start.countDown();
+    done.await();
+    long callerNanosTotal = System.nanoTime() - startNanos;
+    tailer.producersDone();
+    tailerThread.join();
+    long diskNanosTotal = tailer.lastArrivalNanos - startNanos;
+
+    long total = (long) threads * eventsPerThread;
+    long[] caller = new long[(int) total];
+    for (int t = 0; t < threads; t++) {
+      System.arraycopy(callerNanos[t], 0, caller, t * eventsPerThread, eventsPerThread);
+    }
+    Arrays.sort(caller);
+    long[] lag = Arrays.copyOf(tailer.lags, tailer.seen);
+    Arrays.sort(lag);
+
+    return String.format(Locale.US, "%s,%s,%d,%d,%d,%.0f,%.0f,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f,%d,%d",
+        strategy, "mmap".equals(strategy) ? "" : policy.name(), threads, messageSize, total,
+        perSecond(total, callerNanosTotal), perSecond(tailer.seen, diskNanosTotal),
+        micros(percentile(caller, 0.5)), micros(percentile(caller, 0.99)),
+        micros(percentile(caller, 0.999)), micros(percentile(caller, 1)),
+        micros(percentile(lag, 0.5)), micros(percentile(lag, 0.99)),
+        micros(percentile(lag, 0.999)), micros(percentile(lag, 1)),
+        tailer.seen == 0 ? 0 : (double) tailer.bytes / tailer.seen,
+        total - tailer.seen, tailer.orderViolations);
+  }
+
+  /**
+   * Reads the log files as they grow and checks every log against the time it was logged.
+   */
+  private static final class Tailer implements Runnable {
+
+    private final File folder;
+    private final int expected;
+
+    private final Map<String, Long> offsets = new HashMap<>();
+    private final Map<String, StringBuilder> partialLines = new HashMap<>();
+    private final long[] lastSeq;
+    private byte[] buffer = new byte[64 * 1024];
+
+    private volatile boolean producersDone;
+
+    final long[] lags;
+    int seen;
+    long bytes;
+    long orderViolations;
+    long lastArrivalNanos;
+
+    Tailer(File folder, int threads, int expected) {
+      this.folder = folder;
+      this.expected = expected;
+      lastSeq = new long[threads];
+      Arrays.fill(lastSeq, -1);
+      lags = new long[expected];
+    }
+
+    void producersDone() {
+      producersDone = true;
+    }
+
+    @Override
+    public void run() {
+      long idleSince = -1;
+      while (seen < expected) {
+        int before = seen;
+        try {
+          poll();
+        } catch (IOException e) {
+          // read again with the next poll
+        }
+        long now = System.nanoTime();
+        if (seen != before || !producersDone) {
+          idleSince = -1;
+        } else if (idleSince == -1) {
+          idleSince = now;
+        } else if (now - idleSince > TimeUnit.MILLISECONDS.toNanos(IDLE_TIMEOUT_MILLIS)) {
+          // the rest was dropped
+          return;
+        }
+        if (seen == before) {
+          try {
+            Thread.sleep(POLL_MILLIS);
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+      }
+    }
+
+    private void poll() throws IOException {
+      File[] files = folder.listFiles();
+      if (files == null) {
+        return;
+      }
+      // oldest first: the day, then the segment index of RollingFileStrategy, "_9" before "_10"
+      Arrays.sort(files, new Comparator<File>() {
+        @Override
+        public int compare(File a, File b) {
+          String x = a.getName();
+          String y = b.getName();
+          return x.length() != y.length() ? x.length() - y.length() : x.compareTo(y);
+        }
+      });
+      for (File file : files) {
+        if (file.isFile() && !file.getName().startsWith(".")) {
+          read(file);
+        }
+      }
+    }
+
+    private void read(File file) throws IOException {
+      String name = file.getName();
+      Long offset = offsets.get(name);
+      long position = offset != null ? offset : 0;
+      if (file.length() <= position) {
+        return;
+      }
+      RandomAccessFile in = new RandomAccessFile(file, "r");
+      try {
+        in.seek(position);
+        int count;
+        while ((count = in.read(buffer)) > 0) {
+          position += count;
+          bytes += count;
+          StringBuilder line = partialLines.get(name);
+          if (line == null) {
+            line = new StringBuilder();
+            partialLines.put(name, line);
+          }
+          // the tag and level are not written, every log is ASCII
+          for (int i = 0; i < count; i++) {
+            char c = (char) buffer[i];
+            if (c == '\n') {
+              onLine(line);
+              line.setLength(0);
+            } else {
+              line.append(c);
+            }
+          }
+        }
+      } finally {
+        in.close();
+      }
+      offsets.put(name, position);
+    }
+
+    private void onLine(CharSequence line) {
+      long now = System.nanoTime();
+      if (line.length() == 0 || line.charAt(0) < '0' || line.charAt(0) > '9') {
+        // not a log of the generator
+        return;
+      }
+      int first = indexOf(line, ',', 0);
+      int second = indexOf(line, ',', first + 1);
+      int third = indexOf(line, ',', second + 1);
+      int producer = (int) parseLong(line, 0, first);
+      long seq = parseLong(line, first + 1, second);
+      long loggedNanos = parseLong(line, second + 1, third);
+
+      if (seq <= lastSeq[producer]) {
+        orderViolations++;
+      } else {
+        lastSeq[producer] = seq;
+      }
+      if (seen < lags.length) {
+        lags[seen++] = now - loggedNanos;
+      }
+      lastArrivalNanos = now;
+    }
+  }
+
+  private static String option(Map<String, String> options, String name, String defaultValue) {
+    String value = options.get(name);
+    return value != null ? value : defaultValue;
+  }
+
+  private static int[] parseInts(String list) {
+    String[] parts = list.split(",");
+    int[] values = new int[parts.length];
+    for (int i = 0; i < parts.length; i++) {
+      values[i] = Integer.parseInt(parts[i].trim());
+    }
+    return values;
+  }
+
+  private static String padding(int size) {
+    char[] chars = new char[Math.max(size, 0)];
+    Arrays.fill(chars, 'x');
+    return new String(chars);
+  }
+
+  private static int indexOf(CharSequence text, char c, int from) {
+    for (int i = from; i < text.length(); i++) {
+      if (text.charAt(i) == c) {
+        return i;
+      }
+    }
+    return text.length();
+  }
+
+  private static long parseLong(CharSequence text, int start, int end) {
+    long value = 0;
+    boolean negative = start < end && text.charAt(start) == '-';
+    for (int i = negative ? start + 1 : start; i < end; i++) {
+      value = value * 10 + (text.charAt(i) - '0');
+    }
+    return negative ? -value : value;
+  }
+
+  private static long percentile(long[] sorted, double p) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    int index = (int) Math.ceil(p * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+  }
+
+  private static double micros(long nanos) {
+    return nanos / 1000.0;
+  }
+
+  private static double perSecond(long events, long nanos) {
+    return nanos <= 0 ? 0 : events * 1e9 / nanos;
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
@@ -0,0 +1,66 @@
+package com.example.loggerpluslib;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting of a log against a no-op {@link LogStrategy}, called directly on the benchmark threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class FormatStrategyBenchmark {
+
+  private static final String MESSAGE = "benchmark message, with a comma and \"quotes\"";
+  private static final String MULTI_LINE_MESSAGE = "first line\nsecond line\nthird line";
+
+  private FormatStrategy csv;
+  private FormatStrategy jsonLines;
+  private FormatStrategy pretty;
+  private FormatStrategy prettyWithStack;
+  private FormatStrategy prettySingleWrite;
+
+  @Setup(Level.Trial)
+  public void setUp(Blackhole blackhole) {
+    LogStrategy noOp = new NoOpLogStrategy(blackhole);
+    csv = CsvFormatStrategy.newBuilder().logStrategy(noOp).build();
+    jsonLines = JsonLinesFormatStrategy.newBuilder().logStrategy(noOp).build();
+    pretty = PrettyFormatStrategy.newBuilder().logStrategy(noOp).build();
+    prettyWithStack = PrettyFormatStrategy.newBuilder().methodCount(2).logStrategy(noOp).build();
+    prettySingleWrite = PrettyFormatStrategy.newBuilder().singleWrite(true).logStrategy(noOp).build();
+  }
+
+  @Benchmark
+  public void csv() {
+    csv.log(Logger.DEBUG, "Benchmark", MESSAGE);
+  }
+
+  @Benchmark
+  public void jsonLines() {
+    jsonLines.log(Logger.DEBUG, "Benchmark", MESSAGE);
+  }
+
+  @Benchmark
+  public void pretty() {
+    pretty.log(Logger.DEBUG, "Benchmark", MULTI_LINE_MESSAGE);
+  }
+
+  @Benchmark
+  public void prettyWithStack() {
+    prettyWithStack.log(Logger.DEBUG, "Benchmark", MULTI_LINE_MESSAGE);
+  }
+
+  @Benchmark
+  public void prettySingleWrite() {
+    prettySingleWrite.log(Logger.DEBUG, "Benchmark", MULTI_LINE_MESSAGE);
+  }
+}
@@ -0,0 +1,73 @@
+package com.example.loggerpluslib;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logger entry points down to the adapters, with a CSV adapter writing to a no-op strategy.
+ * Includes the hand-off to the dispatcher thread and its back-pressure.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class LoggerBenchmark {
+
+  @Setup(Level.Trial)
+  public void setUp(Blackhole blackhole) {
+    Logger.clearLogAdapters();
+    Logger.addLogAdapter(new DiskLogAdapter(CsvFormatStrategy.newBuilder()
+        .logStrategy(new NoOpLogStrategy(blackhole))
+        .build(), Logger.DEBUG));
+  }
+
+  @TearDown(Level.Iteration)
+  public void flush() {
+    Logger.flush();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    Logger.clearLogAdapters();
+  }
+
+  /**
+   * Tag generated from the call site
+   */
+  @Benchmark
+  public void generatedTag() {
+    Logger.D("benchmark message");
+  }
+
+  @Benchmark
+  public void generatedTagWithArgs() {
+    Logger.D("benchmark %s %d", "message", 42);
+  }
+
+  @Benchmark
+  public void customTag() {
+    Logger.d("Benchmark", "benchmark message");
+  }
+
+  @Benchmark
+  public void event() {
+    Logger.event(Logger.DEBUG).message("benchmark message").kv("uid", 42).kv("path", "/a/b").log();
+  }
+
+  /**
+   * Below the level of every adapter, dropped at the entry point
+   */
+  @Benchmark
+  public void filtered() {
+    Logger.V("benchmark %s %d", "message", 42);
+  }
+}
@@ -0,0 +1,20 @@
+package com.example.loggerpluslib;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Hands every formatted log to the blackhole, so only formatting is measured.
+ */
+final class NoOpLogStrategy implements LogStrategy {
+
+  private final Blackhole blackhole;
+
+  NoOpLogStrategy(Blackhole blackhole) {
+    this.blackhole = blackhole;
+  }
+
+  @Override
+  public void log(int priority, String tag, String message) {
+    blackhole.consume(message);
+  }
+}
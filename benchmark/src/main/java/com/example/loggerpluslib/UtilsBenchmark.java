@@ -0,0 +1,39 @@
+package com.example.loggerpluslib;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The steps of a log which run on the calling thread.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class UtilsBenchmark {
+
+  private final LoggerPrinter printer = new LoggerPrinter();
+
+  /**
+   * Call site lookup for generated tags
+   */
+  @Benchmark
+  public StackTraceElement getStackTraceElement() {
+    return Utils.getStackTraceElement();
+  }
+
+  @Benchmark
+  public String createMessage() {
+    return printer.createMessage("benchmark message");
+  }
+
+  @Benchmark
+  public String createMessageWithArgs() {
+    return printer.createMessage("benchmark %s %d", "message", 42);
+  }
+}
@@ -0,0 +1,136 @@
+package com.example.loggerpluslib.plugin;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Replaces the auto-tagged Logger calls with {@code Logger.injectedLog}, passing the level and the
+ * {@code Class[method][line]} tag of the call site as constants.
+ *
+ * <pre>
+ *   Logger.D("hello %s", args)  ->  Logger.injectedLog("hello %s", args, 3, "MainActivity[onCreate][20]")
+ * </pre>
+ *
+ * The tag has the same shape as the one LoggerPrinter generates from the method stack.
+ */
+class CallSiteClassVisitor extends ClassVisitor {
+
+  private static final String LOGGER = "com/example/loggerpluslib/Logger";
+  private static final String INJECTED = "injectedLog";
+
+  private static final String MESSAGE_DESC = "(Ljava/lang/String;[Ljava/lang/Object;)V";
+  private static final String THROWABLE_DESC = "(Ljava/lang/Throwable;Ljava/lang/String;[Ljava/lang/Object;)V";
+  private static final String SUPPLIER_DESC = "(Lcom/example/loggerpluslib/MessageSupplier;)V";
+
+  /**
+   * Level of each rewritten method, values of Logger.VERBOSE ... Logger.ASSERT
+   */
+  private static final Map<String, Integer> PRIORITIES = new HashMap<>();
+
+  static {
+    PRIORITIES.put("V", 2);
+    PRIORITIES.put("D", 3);
+    PRIORITIES.put("I", 4);
+    PRIORITIES.put("W", 5);
+    PRIORITIES.put("E", 6);
+    PRIORITIES.put("wtf", 7);
+  }
+
+  private String simpleClassName;
+  private boolean changed;
+
+  private CallSiteClassVisitor(ClassVisitor next) {
+    super(Opcodes.ASM6, next);
+  }
+
+  /**
+   * @param wrapperClasses internal names of classes whose calls are left alone
+   * @return the rewritten class, or the given bytes if there was nothing to rewrite
+   */
+  static byte[] transform(byte[] bytes, Set<String> wrapperClasses) {
+    ClassReader reader = new ClassReader(bytes);
+    String className = reader.getClassName();
+    if (LOGGER.equals(className) || wrapperClasses.contains(className)) {
+      return bytes;
+    }
+    ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+    CallSiteClassVisitor visitor = new CallSiteClassVisitor(writer);
+    reader.accept(visitor, 0);
+    return visitor.changed ? writer.toByteArray() : bytes;
+  }
+
+  /**
+   * Same as the tag built from {@code StackTraceElement}: the binary class name without package.
+   */
+  static String simpleClassName(String internalName) {
+    return internalName.substring(internalName.lastIndexOf('/') + 1);
+  }
+
+  static String callSiteTag(String simpleClassName, String methodName, int line) {
+    return simpleClassName + "[" + methodName + "]" + "[" + line + "]";
+  }
+
+  @Override
+  public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+    simpleClassName = simpleClassName(name);
+    super.visit(version, access, name, signature, superName, interfaces);
+  }
+
+  @Override
+  public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+    MethodVisitor next = super.visitMethod(access, name, descriptor, signature, exceptions);
+    return new CallSiteMethodVisitor(next, name);
+  }
+
+  private class CallSiteMethodVisitor extends MethodVisitor {
+
+    private final String methodName;
+    private int line = -1;
+
+    CallSiteMethodVisitor(MethodVisitor next, String methodName) {
+      super(Opcodes.ASM6, next);
+      this.methodName = methodName;
+    }
+
+    @Override
+    public void visitLineNumber(int line, Label start) {
+      this.line = line;
+      super.visitLineNumber(line, start);
+    }
+
+    @Override
+    public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+      Integer priority = opcode == Opcodes.INVOKESTATIC && LOGGER.equals(owner) ? PRIORITIES.get(name) : null;
+      String injectedDesc = priority == null ? null : injectedDescriptor(descriptor);
+      if (injectedDesc == null) {
+        super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+        return;
+      }
+      super.visitLdcInsn(priority);
+      super.visitLdcInsn(callSiteTag(simpleClassName, methodName, line));
+      super.visitMethodInsn(Opcodes.INVOKESTATIC, LOGGER, INJECTED, injectedDesc, false);
+      changed = true;
+    }
+
+    /**
+     * @return descriptor of the matching injectedLog overload, null if the call is not rewritten
+     */
+    private String injectedDescriptor(String descriptor) {
+      if (MESSAGE_DESC.equals(descriptor)
+          || THROWABLE_DESC.equals(descriptor)
+          || SUPPLIER_DESC.equals(descriptor)) {
+        return descriptor.replace(")V", "ILjava/lang/String;)V");
+      }
+      return null;
+    }
+  }
+}
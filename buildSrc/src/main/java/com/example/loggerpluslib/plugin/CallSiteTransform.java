@@ -0,0 +1,158 @@
+package com.example.loggerpluslib.plugin;
+
+import com.android.build.api.transform.DirectoryInput;
+import com.android.build.api.transform.Format;
+import com.android.build.api.transform.JarInput;
+import com.android.build.api.transform.QualifiedContent;
+import com.android.build.api.transform.Transform;
+import com.android.build.api.transform.TransformException;
+import com.android.build.api.transform.TransformInput;
+import com.android.build.api.transform.TransformInvocation;
+import com.android.build.api.transform.TransformOutputProvider;
+import com.android.build.gradle.internal.pipeline.TransformManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+
+/**
+ * Rewrites the auto-tagged Logger calls of the app's own classes, see {@link CallSiteClassVisitor}.
+ * Libraries are passed through untouched.
+ */
+public class CallSiteTransform extends Transform {
+
+  private static final String CLASS_SUFFIX = ".class";
+
+  private final LoggerPlusExtension extension;
+
+  CallSiteTransform(LoggerPlusExtension extension) {
+    this.extension = extension;
+  }
+
+  @Override
+  public String getName() {
+    return "loggerPlusCallSite";
+  }
+
+  @Override
+  public Set<QualifiedContent.ContentType> getInputTypes() {
+    return TransformManager.CONTENT_CLASS;
+  }
+
+  @Override
+  public Set<? super QualifiedContent.Scope> getScopes() {
+    return TransformManager.PROJECT_ONLY;
+  }
+
+  @Override
+  public boolean isIncremental() {
+    return false;
+  }
+
+  @Override
+  public void transform(TransformInvocation invocation) throws TransformException, InterruptedException, IOException {
+    TransformOutputProvider outputProvider = invocation.getOutputProvider();
+    outputProvider.deleteAll();
+
+    boolean enabled = extension.isEnabled();
+    Set<String> wrapperClasses = new HashSet<>();
+    for (String name : extension.getWrapperClasses()) {
+      wrapperClasses.add(name.replace('.', '/'));
+    }
+
+    for (TransformInput input : invocation.getInputs()) {
+      for (DirectoryInput directoryInput : input.getDirectoryInputs()) {
+        File dest = outputProvider.getContentLocation(directoryInput.getName(),
+            directoryInput.getContentTypes(), directoryInput.getScopes(), Format.DIRECTORY);
+        transformDirectory(directoryInput.getFile(), dest, enabled, wrapperClasses);
+      }
+      for (JarInput jarInput : input.getJarInputs()) {
+        File dest = outputProvider.getContentLocation(jarInput.getName(),
+            jarInput.getContentTypes(), jarInput.getScopes(), Format.JAR);
+        transformJar(jarInput.getFile(), dest, enabled, wrapperClasses);
+      }
+    }
+  }
+
+  private void transformDirectory(File source, File dest, boolean enabled, Set<String> wrapperClasses) throws IOException {
+    File[] files = source.listFiles();
+    if (files == null) {
+      return;
+    }
+    if (!dest.exists() && !dest.mkdirs()) {
+      throw new IOException("Cannot create " + dest);
+    }
+    for (File file : files) {
+      File target = new File(dest, file.getName());
+      if (file.isDirectory()) {
+        transformDirectory(file, target, enabled, wrapperClasses);
+        continue;
+      }
+      byte[] bytes = readFully(new FileInputStream(file));
+      if (enabled && file.getName().endsWith(CLASS_SUFFIX)) {
+        bytes = CallSiteClassVisitor.transform(bytes, wrapperClasses);
+      }
+      OutputStream out = new FileOutputStream(target);
+      try {
+        out.write(bytes);
+      } finally {
+        out.close();
+      }
+    }
+  }
+
+  private void transformJar(File source, File dest, boolean enabled, Set<String> wrapperClasses) throws IOException {
+    File parent = dest.getParentFile();
+    if (parent != null && !parent.exists() && !parent.mkdirs()) {
+      throw new IOException("Cannot create " + parent);
+    }
+    ZipInputStream in = new ZipInputStream(new FileInputStream(source));
+    ZipOutputStream out = new ZipOutputStream(new FileOutputStream(dest));
+    try {
+      ZipEntry entry;
+      while ((entry = in.getNextEntry()) != null) {
+        if (entry.isDirectory()) {
+          continue;
+        }
+        byte[] bytes = readEntry(in);
+        if (enabled && entry.getName().endsWith(CLASS_SUFFIX)) {
+          bytes = CallSiteClassVisitor.transform(bytes, wrapperClasses);
+        }
+        out.putNextEntry(new ZipEntry(entry.getName()));
+        out.write(bytes);
+        out.closeEntry();
+      }
+    } finally {
+      in.close();
+      out.close();
+    }
+  }
+
+  private static byte[] readFully(InputStream in) throws IOException {
+    try {
+      return readEntry(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  private static byte[] readEntry(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,45 @@
+package com.example.loggerpluslib.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Configuration of the LoggerPlus Gradle plugin.
+ *
+ * <pre><code>
+ *   loggerPlus {
+ *       enabled = true
+ *       wrapperClasses = ['com.example.loggerplus.LogUtil']
+ *   }
+ * </code></pre>
+ */
+public class LoggerPlusExtension {
+
+  /**
+   * Whether Logger calls are rewritten at all
+   */
+  private boolean enabled = true;
+
+  /**
+   * Classes wrapping Logger. Calls inside them are left alone, their tag has to be
+   * resolved at runtime from the caller of the wrapper.
+   */
+  private List<String> wrapperClasses = new ArrayList<>();
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public List<String> getWrapperClasses() {
+    return wrapperClasses;
+  }
+
+  public void setWrapperClasses(List<String> wrapperClasses) {
+    this.wrapperClasses = wrapperClasses == null ? new ArrayList<String>() : wrapperClasses;
+  }
+}
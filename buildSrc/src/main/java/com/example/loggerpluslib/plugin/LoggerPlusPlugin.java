@@ -0,0 +1,31 @@
+package com.example.loggerpluslib.plugin;
+
+import com.android.build.gradle.AppExtension;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+
+
+/**
+ * Injects the call site tag of every auto-tagged Logger call at build time.
+ *
+ * <pre><code>
+ *   apply plugin: 'com.android.application'
+ *   apply plugin: 'com.example.loggerplus'
+ * </code></pre>
+ *
+ * @see CallSiteTransform
+ */
+public class LoggerPlusPlugin implements Plugin<Project> {
+
+  @Override
+  public void apply(Project project) {
+    final LoggerPlusExtension extension = project.getExtensions().create("loggerPlus", LoggerPlusExtension.class);
+
+    AppExtension android = project.getExtensions().findByType(AppExtension.class);
+    if (android == null) {
+      throw new IllegalStateException("'com.example.loggerplus' must be applied after 'com.android.application'");
+    }
+    android.registerTransform(new CallSiteTransform(extension));
+  }
+}
@@ -2,7 +2,6 @@ package com.example.loggerpluslib;
 
 
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
 
 
 /**
@@ -18,27 +17,27 @@ import androidx.annotation.Nullable;
  *  └──────────────────────────
  * </pre>
  */
-public class AndroidLogAdapter extends LogAdapter {
-
-  @NonNull
-  private final FormatStrategy formatStrategy;
+public class AndroidLogAdapter extends FormattingLogAdapter {
 
   public AndroidLogAdapter() {
-    this.formatStrategy = PrettyFormatStrategy.newBuilder().build();
+    this(PrettyFormatStrategy.newBuilder().build());
   }
 
   public AndroidLogAdapter(@NonNull FormatStrategy formatStrategy) {
-    this.formatStrategy = Utils.checkNotNull(formatStrategy);
+    this(formatStrategy, Logger.VERBOSE);
   }
 
-  @Override
-  public boolean isLoggable(int priority, @Nullable String tag) {
-    return true;
+  /**
+   * @param minPriority logs below this level are dropped, e.g. {@link Logger#INFO}
+   */
+  public AndroidLogAdapter(@NonNull FormatStrategy formatStrategy, int minPriority) {
+    this(formatStrategy, TagLevels.of(minPriority));
   }
 
-  @Override
-  public void log(int priority, @Nullable String tag, @NonNull String message) {
-    formatStrategy.log(priority, tag, message);
+  /**
+   * @param tagLevels minimum levels per tag, logs below them are dropped
+   */
+  public AndroidLogAdapter(@NonNull FormatStrategy formatStrategy, @NonNull TagLevels tagLevels) {
+    super(formatStrategy, tagLevels);
   }
-
 }
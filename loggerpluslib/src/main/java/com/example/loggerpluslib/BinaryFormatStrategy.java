@@ -0,0 +1,319 @@
+package com.example.loggerpluslib;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Compact binary file logging, several times smaller than {@link CsvFormatStrategy}.
+ * Writes the following data per log:
+ * timestamp as delta to the previous one, level as one byte, tag and thread name as dictionary ids,
+ * log message.
+ *
+ * <p>The files are written on a background thread and can be turned back into CSV or JSON
+ * with {@link BinaryLogDecoder}. See {@link BinaryLogFormat} for the layout. Logs wait for the
+ * writer in the same bounded queue as with {@link DiskLogStrategy}.</p>
+ *
+ * <pre><code>
+ *   Logger.addLogAdapter(new DiskLogAdapter(BinaryFormatStrategy.newBuilder()
+ *       .logDiskPath(logDiskPath)
+ *       .capacity(5000)                                   // (Optional) Default 10000 logs
+ *       .overflowPolicy(OverflowPolicy.DROP_OLDEST)       // (Optional) Default DROP_BY_PRIORITY
+ *       .build()));
+ * </code></pre>
+ */
+public class BinaryFormatStrategy implements FormatStrategy {
+
+  private static final long BLOCK_TIMEOUT_MILLIS = 100;
+
+  @NonNull
+  private final FileStrategy fileStrategy;
+
+  @NonNull
+  private final BoundedLogQueue queue;
+
+  /**
+   * Started by the first log, so that creating the strategy costs nothing at app start
+   */
+  @Nullable
+  private volatile WriteHandler handler;
+
+  private BinaryFormatStrategy(@NonNull Builder builder) {
+    Utils.checkNotNull(builder);
+
+    fileStrategy = builder.fileStrategy;
+    queue = new BoundedLogQueue(builder.capacity, builder.maxPendingBytes, builder.overflowPolicy,
+        BLOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS, null);
+  }
+
+  @NonNull
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  @Override
+  public void log(int priority, @Nullable String onceOnlyTag, @NonNull String message) {
+    Utils.checkNotNull(message);
+
+    // encoding needs the state of the current file, so it happens on the writer thread
+    handler().enqueue(new Event(System.currentTimeMillis(), priority, onceOnlyTag,
+        Utils.callerThread().getName(), message));
+    queue.reportDropped(this);
+  }
+
+  /**
+   * @see LogAdapter#onIdle(boolean)
+   */
+  long onIdle() {
+    return queue.reportDropped(this);
+  }
+
+  /**
+   * @return number of logs of the given level dropped so far because the queue was full
+   */
+  public long getDroppedCount(int priority) {
+    return queue.droppedCount(priority);
+  }
+
+  @NonNull
+  private WriteHandler handler() {
+    WriteHandler h = handler;
+    if (h == null) {
+      synchronized (this) {
+        h = handler;
+        if (h == null) {
+          HandlerThread ht = new HandlerThread("AndroidBinaryLogger");
+          ht.start();
+          h = new WriteHandler(ht.getLooper(), fileStrategy, queue);
+          handler = h;
+        }
+      }
+    }
+    return h;
+  }
+
+  private static final class Event extends BoundedLogQueue.Record {
+    final long millis;
+    final String tag;
+    final String thread;
+
+    Event(long millis, int priority, String tag, String thread, String message) {
+      super(priority, message);
+      this.millis = millis;
+      this.tag = tag;
+      this.thread = thread;
+    }
+  }
+
+  static class WriteHandler extends Handler {
+
+    private static final int MSG_DRAIN = 1;
+
+    @NonNull
+    private final FileStrategy fileStrategy;
+
+    @NonNull
+    private final BoundedLogQueue pending;
+
+    /**
+     * Deque of the previous batch, handed back to the queue on the next drain
+     */
+    @NonNull
+    private ArrayDeque<BoundedLogQueue.Record> spare = new ArrayDeque<>();
+
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    @Nullable
+    private File currentFile;
+    @Nullable
+    private FileOutputStream fileOut;
+    @Nullable
+    private OutputStream out;
+
+    /**
+     * Length of the current file up to the end of the last batch written completely
+     */
+    private long committedLength;
+
+    @NonNull
+    private final BinaryLogEncoder encoder = new BinaryLogEncoder();
+
+    WriteHandler(@NonNull Looper looper, @NonNull FileStrategy fileStrategy, @NonNull BoundedLogQueue pending) {
+      super(Utils.checkNotNull(looper));
+      this.fileStrategy = Utils.checkNotNull(fileStrategy);
+      this.pending = Utils.checkNotNull(pending);
+    }
+
+    void enqueue(@NonNull Event event) {
+      // a full queue always has a drain scheduled, so a dropped log needs no message
+      if (pending.offer(event) && drainScheduled.compareAndSet(false, true)) {
+        sendEmptyMessage(MSG_DRAIN);
+      }
+    }
+
+    @Override
+    public void handleMessage(@NonNull Message msg) {
+      if (msg.what != MSG_DRAIN) {
+        return;
+      }
+      drainScheduled.set(false);
+      if (pending.isEmpty()) {
+        return;
+      }
+
+      ArrayDeque<BoundedLogQueue.Record> batch = pending.drain(spare);
+      try {
+        OutputStream stream = openStream(((Event) batch.getFirst()).millis);
+        for (BoundedLogQueue.Record record : batch) {
+          Event event = (Event) record;
+          encoder.encode(event.millis, event.priority, event.tag, event.thread, event.message);
+        }
+        // the whole batch with a single write
+        int size = encoder.size();
+        encoder.writeTo(stream);
+        committedLength += size;
+        long now = System.nanoTime();
+        for (BoundedLogQueue.Record record : batch) {
+          LoggerMetrics.written(now - record.enqueuedNanos);
+        }
+      } catch (IOException e) {
+        // a new segment is started with the next batch
+        LoggerMetrics.writeError(e);
+        pending.discard(batch);
+        rollBack();
+      }
+      batch.clear();
+      spare = batch;
+      // logs which waited for room were queued by the drain
+      if (!pending.isEmpty() && drainScheduled.compareAndSet(false, true)) {
+        sendEmptyMessage(MSG_DRAIN);
+      }
+    }
+
+    /**
+     * Opens the current file when it changed, which starts a new segment
+     */
+    @NonNull
+    private OutputStream openStream(long millis) throws IOException {
+      File logFile = fileStrategy.getCurrentFile();
+      if (out != null && logFile.equals(currentFile)) {
+        return out;
+      }
+      closeStream();
+      boolean created = !logFile.exists();
+      fileOut = new FileOutputStream(logFile, true);
+      committedLength = fileOut.getChannel().size();
+      out = new CountingOutputStream(fileOut, logFile, fileStrategy);
+      currentFile = logFile;
+      if (created) {
+        LoggerMetrics.fileCreated();
+      }
+      encoder.startSegment(millis);
+      return out;
+    }
+
+    /**
+     * Cuts off whatever part of the failed batch reached the file, so that the next segment
+     * starts right after the last complete record.
+     */
+    private void rollBack() {
+      if (fileOut != null) {
+        try {
+          fileOut.getChannel().truncate(committedLength);
+        } catch (IOException e1) { /* fail silently, the decoder skips to the next segment */ }
+      }
+      closeStream();
+    }
+
+    private void closeStream() {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException e1) { /* fail silently */ }
+      }
+      out = null;
+      fileOut = null;
+      currentFile = null;
+      // drop a half-encoded batch, it would not decode without its segment
+      encoder.reset();
+    }
+  }
+
+  public static final class Builder {
+
+    String logDiskPath;
+    FileStrategy fileStrategy;
+    int capacity = 10000;
+    long maxPendingBytes = 4 * 1024 * 1024;
+    OverflowPolicy overflowPolicy = OverflowPolicy.DROP_BY_PRIORITY;
+
+    private Builder() {
+    }
+
+    /**
+     * Folder of the daily log files, ignored if a {@link #fileStrategy(FileStrategy)} is given
+     */
+    @NonNull
+    public Builder logDiskPath(@Nullable String val) {
+      logDiskPath = val;
+      return this;
+    }
+
+    @NonNull
+    public Builder fileStrategy(@Nullable FileStrategy val) {
+      fileStrategy = val;
+      return this;
+    }
+
+    /**
+     * Maximum number of logs waiting for the writer
+     */
+    @NonNull
+    public Builder capacity(int val) {
+      capacity = val;
+      return this;
+    }
+
+    /**
+     * Maximum estimated heap size of the logs waiting for the writer
+     */
+    @NonNull
+    public Builder maxPendingBytes(long val) {
+      maxPendingBytes = val;
+      return this;
+    }
+
+    /**
+     * {@link OverflowPolicy#SPILL_TO_DISK} is not supported, spilled logs are kept as text
+     */
+    @NonNull
+    public Builder overflowPolicy(@NonNull OverflowPolicy val) {
+      if (Utils.checkNotNull(val) == OverflowPolicy.SPILL_TO_DISK) {
+        throw new IllegalArgumentException("SPILL_TO_DISK is not supported for binary logs");
+      }
+      overflowPolicy = val;
+      return this;
+    }
+
+    @NonNull
+    public BinaryFormatStrategy build() {
+      if (fileStrategy == null) {
+        fileStrategy = new DateFileStrategy(logDiskPath, BinaryLogFormat.FILE_SUFFIX);
+      }
+      return new BinaryFormatStrategy(this);
+    }
+  }
+}
@@ -0,0 +1,432 @@
+package com.example.loggerpluslib;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+
+/**
+ * Turns the files of {@link BinaryFormatStrategy} back into text. Plain Java, so it also runs on a
+ * desktop:
+ *
+ * <pre><code>
+ *   java -cp loggerpluslib.jar com.example.loggerpluslib.BinaryLogDecoder [--json] 2020-07-07.lpb [out]
+ * </code></pre>
+ *
+ * CSV output has the same columns as {@link CsvFormatStrategy}, JSON output is one object per line
+ * and also holds the thread name.
+ *
+ * <p>A record torn by a crash is skipped and decoding goes on with the next segment. A torn
+ * record may hide the segment header after it, so every log is only written once the record after
+ * it decoded as well; if the next segment header turns out to lie inside the previous record,
+ * that record is dropped too.</p>
+ */
+public final class BinaryLogDecoder {
+
+  private static final String NEW_LINE = System.getProperty("line.separator");
+
+  /**
+   * A longer string is taken for a torn record
+   */
+  private static final int MAX_STRING_LENGTH = 64 * 1024 * 1024;
+
+  private final boolean json;
+  private final TimestampRenderer dateRenderer =
+      new TimestampRenderer(new SimpleDateFormat("yyyy.MM.dd HH:mm:ss.SSS", Locale.UK));
+
+  private final List<String> tags = new ArrayList<>();
+  private final List<String> threads = new ArrayList<>();
+  private long lastMillis;
+
+  /**
+   * @param json true for JSON lines, false for CSV
+   */
+  public BinaryLogDecoder(boolean json) {
+    this.json = json;
+  }
+
+  public static void main(String[] args) throws IOException {
+    boolean json = args.length > 0 && "--json".equals(args[0]);
+    int first = json ? 1 : 0;
+    if (args.length <= first) {
+      System.err.println("usage: BinaryLogDecoder [--json] <input.lpb> [output]");
+      System.exit(1);
+      return;
+    }
+    InputStream in = new FileInputStream(args[first]);
+    OutputStream out = args.length > first + 1 ? new FileOutputStream(args[first + 1]) : System.out;
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+    try {
+      new BinaryLogDecoder(json).decode(in, writer);
+    } finally {
+      in.close();
+      writer.flush();
+      if (out != System.out) {
+        writer.close();
+      }
+    }
+  }
+
+  /**
+   * @return number of logs decoded
+   * @throws IOException if the input does not start with a segment of a supported version
+   */
+  public int decode(@NonNull InputStream input, @NonNull Writer out) throws IOException {
+    RecordInput in = new RecordInput(new BufferedInputStream(Utils.checkNotNull(input)));
+    try {
+      int first = in.read();
+      if (first == -1) {
+        return 0;
+      }
+      if (first != BinaryLogFormat.MAGIC[0]) {
+        throw new IOException("Not a binary log file");
+      }
+      readSegmentHeader(in);
+    } catch (EOFException e) {
+      return 0;
+    }
+
+    int count = 0;
+    // written once the next record decodes, a torn record may have swallowed a segment header
+    Event pending = null;
+    for (;;) {
+      in.nextRecord();
+      int type = in.read();
+      if (type == -1) {
+        break;
+      }
+      Event event = null;
+      try {
+        if (type == BinaryLogFormat.MAGIC[0]) {
+          readSegmentHeader(in);
+        } else if (type == BinaryLogFormat.DEFINE_TAG) {
+          define(in, tags);
+        } else if (type == BinaryLogFormat.DEFINE_THREAD) {
+          define(in, threads);
+        } else if (type == BinaryLogFormat.EVENT) {
+          event = readEvent(in);
+        } else {
+          throw new IOException("Unknown record type " + type);
+        }
+      } catch (IOException e) {
+        // a torn record, e.g. after a crash: go on with the next segment
+        int previousLength = in.rewind();
+        long headerAt = skipToSegment(in);
+        if (pending != null && (headerAt < 0 || headerAt >= previousLength)) {
+          write(pending, out);
+          count++;
+        }
+        pending = null;
+        if (headerAt < 0) {
+          return count;
+        }
+        continue;
+      }
+      if (pending != null) {
+        write(pending, out);
+        count++;
+      }
+      pending = event;
+    }
+    if (pending != null) {
+      write(pending, out);
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Reads up to and including the next segment header.
+   *
+   * @return offset of the header from where reading went on, -1 if there is none
+   */
+  private long skipToSegment(@NonNull RecordInput in) throws IOException {
+    long start = in.position();
+    int matched = 0;
+    for (;;) {
+      int b = in.read();
+      if (b == -1) {
+        return -1;
+      }
+      if (b == (matched < BinaryLogFormat.MAGIC.length ? BinaryLogFormat.MAGIC[matched] : BinaryLogFormat.VERSION)) {
+        matched++;
+      } else {
+        matched = b == BinaryLogFormat.MAGIC[0] ? 1 : 0;
+      }
+      if (matched == BinaryLogFormat.MAGIC.length + 1) {
+        long headerAt = in.position() - matched - start;
+        in.keepFromHere();
+        try {
+          startSegment(readVarLong(in));
+          return headerAt;
+        } catch (EOFException e) {
+          return -1;
+        } catch (IOException e) {
+          // not a header after all
+          in.stopKeeping();
+          matched = 0;
+        }
+      }
+    }
+  }
+
+  private void readSegmentHeader(@NonNull RecordInput in) throws IOException {
+    for (int i = 1; i < BinaryLogFormat.MAGIC.length; i++) {
+      if (readByte(in) != BinaryLogFormat.MAGIC[i]) {
+        throw new IOException("Not a binary log segment");
+      }
+    }
+    int version = readByte(in);
+    if (version != BinaryLogFormat.VERSION) {
+      throw new IOException("Unsupported version " + version);
+    }
+    startSegment(readVarLong(in));
+  }
+
+  private void startSegment(long baseMillis) {
+    tags.clear();
+    threads.clear();
+    lastMillis = baseMillis;
+  }
+
+  private void define(@NonNull RecordInput in, @NonNull List<String> dictionary) throws IOException {
+    int id = (int) readVarLong(in);
+    String value = readString(in);
+    if (id != dictionary.size() + 1) {
+      throw new IOException("Unexpected dictionary id " + id);
+    }
+    dictionary.add(value);
+  }
+
+  @NonNull
+  private Event readEvent(@NonNull RecordInput in) throws IOException {
+    long millis = lastMillis + BinaryLogFormat.unZigZag(readVarLong(in));
+    int priority = readByte(in);
+    String tag = lookup(tags, (int) readVarLong(in));
+    String thread = lookup(threads, (int) readVarLong(in));
+    String message = readString(in);
+    lastMillis = millis;
+    return new Event(millis, priority, tag, thread, message);
+  }
+
+  private void write(@NonNull Event event, @NonNull Writer out) throws IOException {
+    if (json) {
+      out.write(JsonEncoder.get().begin()
+          .field("time", event.millis)
+          .field("date", dateRenderer, event.millis)
+          .field("level", Utils.logLevel(event.priority))
+          .field("tag", event.tag)
+          .field("thread", event.thread)
+          .field("message", event.message)
+          .end("\n"));
+    } else {
+      out.write(CsvEncoder.get().begin()
+          .field(event.millis)
+          .field(dateRenderer, event.millis)
+          .field(Utils.logLevel(event.priority))
+          .field(event.tag)
+          .quotedField(event.message)
+          .end(NEW_LINE));
+    }
+  }
+
+  @Nullable
+  private static String lookup(@NonNull List<String> dictionary, int id) throws IOException {
+    if (id == 0) {
+      return null;
+    }
+    if (id > dictionary.size()) {
+      throw new IOException("Undefined dictionary id " + id);
+    }
+    return dictionary.get(id - 1);
+  }
+
+  private static int readByte(@NonNull RecordInput in) throws IOException {
+    int b = in.read();
+    if (b == -1) {
+      throw new EOFException();
+    }
+    return b;
+  }
+
+  private static long readVarLong(@NonNull RecordInput in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = readByte(in);
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed varint");
+  }
+
+  @NonNull
+  private static String readString(@NonNull RecordInput in) throws IOException {
+    long length = readVarLong(in);
+    if (length < 0 || length > MAX_STRING_LENGTH) {
+      throw new IOException("Malformed string length " + length);
+    }
+    byte[] bytes = new byte[(int) length];
+    in.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+
+  private static final class Event {
+    final long millis;
+    final int priority;
+    final String tag;
+    final String thread;
+    final String message;
+
+    Event(long millis, int priority, String tag, String thread, String message) {
+      this.millis = millis;
+      this.priority = priority;
+      this.tag = tag;
+      this.thread = thread;
+      this.message = message;
+    }
+  }
+
+  /**
+   * Input which keeps the bytes of the previous and the current record, so that decoding can
+   * start over right after the start of the previous record.
+   */
+  private static final class RecordInput {
+
+    @NonNull
+    private final InputStream in;
+
+    @NonNull
+    private byte[] kept = new byte[256];
+    private int keptSize;
+    /**
+     * Start of the current record in {@link #kept}, the previous record lies before it
+     */
+    private int recordStart;
+    private boolean keeping = true;
+
+    /**
+     * Bytes read again after {@link #rewind()}, before the input goes on
+     */
+    @NonNull
+    private byte[] replay = new byte[0];
+    private int replayPosition;
+
+    /**
+     * Bytes read so far, read again ones included
+     */
+    private long position;
+
+    RecordInput(@NonNull InputStream in) {
+      this.in = in;
+    }
+
+    int read() throws IOException {
+      int b = replayPosition < replay.length ? replay[replayPosition++] & 0xFF : in.read();
+      if (b != -1) {
+        position++;
+        if (keeping) {
+          keep(b);
+        }
+      }
+      return b;
+    }
+
+    long position() {
+      return position;
+    }
+
+    void readFully(@NonNull byte[] bytes) throws IOException {
+      int read = Math.min(bytes.length, replay.length - replayPosition);
+      System.arraycopy(replay, replayPosition, bytes, 0, read);
+      replayPosition += read;
+      while (read < bytes.length) {
+        int count = in.read(bytes, read, bytes.length - read);
+        if (count == -1) {
+          position += read;
+          keep(bytes, read);
+          throw new EOFException();
+        }
+        read += count;
+      }
+      position += read;
+      keep(bytes, read);
+    }
+
+    /**
+     * The current record is complete and becomes the previous one.
+     */
+    void nextRecord() {
+      System.arraycopy(kept, recordStart, kept, 0, keptSize - recordStart);
+      keptSize -= recordStart;
+      recordStart = keptSize;
+      keeping = true;
+    }
+
+    /**
+     * Goes back to the byte after the start of the previous record and stops keeping bytes.
+     *
+     * @return number of bytes of the previous record which are read again
+     */
+    int rewind() {
+      int from = Math.min(1, keptSize);
+      int previousLength = Math.max(recordStart - from, 0);
+      byte[] rest = new byte[keptSize - from + replay.length - replayPosition];
+      System.arraycopy(kept, from, rest, 0, keptSize - from);
+      System.arraycopy(replay, replayPosition, rest, keptSize - from, replay.length - replayPosition);
+      replay = rest;
+      replayPosition = 0;
+      stopKeeping();
+      return previousLength;
+    }
+
+    void stopKeeping() {
+      keptSize = 0;
+      recordStart = 0;
+      keeping = false;
+    }
+
+    /**
+     * Keeps bytes again, starting with the next one.
+     */
+    void keepFromHere() {
+      keptSize = 0;
+      recordStart = 0;
+      keeping = true;
+    }
+
+    private void keep(int b) {
+      if (keptSize == kept.length) {
+        kept = Arrays.copyOf(kept, keptSize * 2);
+      }
+      kept[keptSize++] = (byte) b;
+    }
+
+    private void keep(@NonNull byte[] bytes, int length) {
+      if (!keeping) {
+        return;
+      }
+      if (keptSize + length > kept.length) {
+        kept = Arrays.copyOf(kept, Math.max(kept.length * 2, keptSize + length));
+      }
+      System.arraycopy(bytes, 0, kept, keptSize, length);
+      keptSize += length;
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package com.example.loggerpluslib;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Encodes logs into the {@link BinaryLogFormat}. Keeps the dictionaries and the last timestamp of
+ * the current segment, so one instance has to be used per file, from a single thread.
+ */
+final class BinaryLogEncoder {
+
+  private static final int INITIAL_CAPACITY = 4 * 1024;
+
+  private final Map<String, Integer> tags = new HashMap<>();
+  private final Map<String, Integer> threads = new HashMap<>();
+  private long lastMillis;
+
+  private byte[] buffer = new byte[INITIAL_CAPACITY];
+  private int size;
+
+  /**
+   * Starts a new segment, everything encoded afterwards decodes without the previous records.
+   */
+  void startSegment(long millis) {
+    tags.clear();
+    threads.clear();
+    lastMillis = millis;
+    ensureCapacity(BinaryLogFormat.MAGIC.length + 1 + 10);
+    for (byte b : BinaryLogFormat.MAGIC) {
+      buffer[size++] = b;
+    }
+    buffer[size++] = (byte) BinaryLogFormat.VERSION;
+    writeVarLong(millis);
+  }
+
+  void encode(long millis, int priority, @Nullable String tag, @Nullable String thread, @NonNull String message) {
+    if (tags.size() >= BinaryLogFormat.MAX_DICTIONARY_SIZE || threads.size() >= BinaryLogFormat.MAX_DICTIONARY_SIZE) {
+      startSegment(millis);
+    }
+    int tagId = idOf(tags, tag, BinaryLogFormat.DEFINE_TAG);
+    int threadId = idOf(threads, thread, BinaryLogFormat.DEFINE_THREAD);
+
+    writeByte(BinaryLogFormat.EVENT);
+    writeVarLong(BinaryLogFormat.zigZag(millis - lastMillis));
+    lastMillis = millis;
+    writeByte(priority);
+    writeVarLong(tagId);
+    writeVarLong(threadId);
+    writeString(message);
+  }
+
+  /**
+   * Writes everything encoded so far and empties the buffer.
+   */
+  void writeTo(@NonNull OutputStream out) throws IOException {
+    out.write(buffer, 0, size);
+    size = 0;
+    if (buffer.length > INITIAL_CAPACITY * 16) {
+      // a burst grew it, do not keep that much memory around
+      buffer = new byte[INITIAL_CAPACITY];
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  void reset() {
+    size = 0;
+  }
+
+  private int idOf(@NonNull Map<String, Integer> dictionary, @Nullable String value, int defineType) {
+    if (value == null) {
+      return 0;
+    }
+    Integer id = dictionary.get(value);
+    if (id != null) {
+      return id;
+    }
+    id = dictionary.size() + 1;
+    dictionary.put(value, id);
+    writeByte(defineType);
+    writeVarLong(id);
+    writeString(value);
+    return id;
+  }
+
+  private void writeByte(int value) {
+    ensureCapacity(1);
+    buffer[size++] = (byte) value;
+  }
+
+  private void writeVarLong(long value) {
+    ensureCapacity(10);
+    while ((value & ~0x7FL) != 0) {
+      buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buffer[size++] = (byte) value;
+  }
+
+  /**
+   * UTF-8 encodes straight into the buffer, without an intermediate byte array.
+   */
+  private void writeString(@NonNull String value) {
+    int length = value.length();
+    int utf8Length = 0;
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        utf8Length++;
+      } else if (c < 0x800) {
+        utf8Length += 2;
+      } else if (!isSurrogate(c)) {
+        utf8Length += 3;
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+        utf8Length += 4;
+        i++;
+      } else {
+        utf8Length++;
+      }
+    }
+    writeVarLong(utf8Length);
+    ensureCapacity(utf8Length);
+
+    byte[] b = buffer;
+    int p = size;
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        b[p++] = (byte) c;
+      } else if (c < 0x800) {
+        b[p++] = (byte) (0xC0 | (c >> 6));
+        b[p++] = (byte) (0x80 | (c & 0x3F));
+      } else if (!isSurrogate(c)) {
+        b[p++] = (byte) (0xE0 | (c >> 12));
+        b[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        b[p++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        b[p++] = (byte) (0xF0 | (codePoint >> 18));
+        b[p++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        b[p++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        b[p++] = (byte) (0x80 | (codePoint & 0x3F));
+      } else {
+        // lone surrogate, replaced like String.getBytes() does
+        b[p++] = '?';
+      }
+    }
+    size = p;
+  }
+
+  private static boolean isSurrogate(char c) {
+    return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+  }
+
+  private void ensureCapacity(int extra) {
+    if (size + extra > buffer.length) {
+      byte[] grown = new byte[Math.max(buffer.length * 2, size + extra)];
+      System.arraycopy(buffer, 0, grown, 0, size);
+      buffer = grown;
+    }
+  }
+}
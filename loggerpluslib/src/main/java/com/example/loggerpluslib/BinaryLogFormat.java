@@ -0,0 +1,48 @@
+package com.example.loggerpluslib;
+
+
+/**
+ * Layout of the binary log files written by {@link BinaryFormatStrategy}.
+ *
+ * <pre>
+ *  file    := segment*
+ *  segment := 'L' 'P' 'B' version varlong(baseMillis) record*
+ *  record  := DEFINE_TAG    varint(id) string
+ *           | DEFINE_THREAD varint(id) string
+ *           | EVENT varlong(zigzag(millis - previousMillis)) byte(level) varint(tagId) varint(threadId) string
+ *  string  := varint(utf8Length) utf8Bytes
+ * </pre>
+ *
+ * Tags and thread names are written once per segment and then referred to by id, 0 standing for null.
+ * A new segment starts whenever a file is opened. A batch which fails to be written is cut off
+ * the file again; a record torn by a crash is skipped by {@link BinaryLogDecoder}, which goes on
+ * with the next segment header.
+ */
+final class BinaryLogFormat {
+
+  static final byte[] MAGIC = {'L', 'P', 'B'};
+  static final int VERSION = 1;
+
+  static final int DEFINE_TAG = 1;
+  static final int DEFINE_THREAD = 2;
+  static final int EVENT = 3;
+
+  /**
+   * A segment is started over once a dictionary holds this many entries
+   */
+  static final int MAX_DICTIONARY_SIZE = 4096;
+
+  static final String FILE_SUFFIX = ".lpb";
+
+  private BinaryLogFormat() {
+    // no instance
+  }
+
+  static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  static long unZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+}
@@ -0,0 +1,663 @@
+package com.example.loggerpluslib;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * Queue of formatted logs between the calling threads and a single writer thread, limited to
+ * a number of logs and to an estimate of their heap size. Logs which do not fit are handled by an
+ * {@link OverflowPolicy} and counted per level.
+ *
+ * <p>With {@link OverflowPolicy#BLOCK} a thread which logs waits for room, except the
+ * {@link LogDispatcher} thread, which would hold up every adapter. Its logs which do not fit wait
+ * in order behind the queue instead, and are only dropped if there is still no room for them when
+ * the block timeout is over.</p>
+ *
+ * <p>With {@link OverflowPolicy#SPILL_TO_DISK} logs which do not fit are handed to a spill thread
+ * which appends them to a spill file, and so is every later log until the writer takes the spill
+ * file over, which keeps the order: queued logs are always older than spilled ones. Logs waiting
+ * for the spill thread count against the same limits as the queue. Once the spill thread falls
+ * behind, the caller appends them and its own log to the spill file itself, so nothing is
+ * dropped.</p>
+ *
+ * <p>Once the queue is back below half its limits, {@link #takeDropReport()} hands out the number
+ * of logs dropped since the last report, for the writer's format to log it.</p>
+ */
+final class BoundedLogQueue {
+
+  /**
+   * One queued log, writers may queue subclasses carrying more data
+   */
+  static class Record {
+    final int priority;
+    @NonNull
+    final String message;
+    /**
+     * {@link System#nanoTime()} when the log was queued
+     */
+    final long enqueuedNanos;
+
+    Record(int priority, @NonNull String message) {
+      this.priority = priority;
+      this.message = message;
+      this.enqueuedNanos = System.nanoTime();
+    }
+  }
+
+  private static final Charset CHARSET = Charset.forName("UTF-8");
+  private static final int SPILL_BUFFER_SIZE = 8 * 1024;
+
+  /**
+   * Tag of the drop report, and how often an idle dispatcher looks whether it can be written
+   */
+  private static final String DROP_REPORT_TAG = "Logger";
+  private static final long DROP_REPORT_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final int capacity;
+  private final long maxBytes;
+  @NonNull
+  private final OverflowPolicy policy;
+  private final long blockTimeoutNanos;
+
+  /**
+   * Only set for {@link OverflowPolicy#SPILL_TO_DISK}
+   */
+  @Nullable
+  private final File spillFile;
+  @Nullable
+  private final File replayFile;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notFull = lock.newCondition();
+
+  /**
+   * Guarded by lock
+   */
+  @NonNull
+  private ArrayDeque<Record> records = new ArrayDeque<>();
+  private long bytes;
+
+  /**
+   * Logs of the dispatcher thread which wait for room with {@link OverflowPolicy#BLOCK}, newer
+   * than every queued log, guarded by lock
+   */
+  @NonNull
+  private final ArrayDeque<Record> waiting = new ArrayDeque<>();
+
+  /**
+   * Logs handed to the spill thread, guarded by lock. {@link #spilling} stays set until the
+   * writer takes the spill file over.
+   */
+  @NonNull
+  private ArrayDeque<Record> unspilled = new ArrayDeque<>();
+  private long unspilledBytes;
+  private boolean spilling;
+  private boolean spillScheduled;
+
+  /**
+   * Held while the spill file is written or handed over, always taken before {@link #lock}
+   */
+  private final ReentrantLock spillLock = new ReentrantLock();
+
+  /**
+   * Open while logs are spilled, guarded by spillLock
+   */
+  @Nullable
+  private OutputStream spill;
+
+  /**
+   * Runs the spill thread's work, null for a {@link HandlerThread} started by the first spill
+   */
+  @Nullable
+  private final Executor spillExecutor;
+
+  @Nullable
+  private volatile Handler spillHandler;
+
+  private final Runnable spillTask = new Runnable() {
+    @Override
+    public void run() {
+      writeUnspilled();
+    }
+  };
+
+  /**
+   * Dropped logs per level since creation, guarded by lock
+   */
+  private final long[] droppedTotal = new long[Logger.ASSERT + 1];
+
+  /**
+   * Dropped logs per level since the last drop report, guarded by lock
+   */
+  private final long[] droppedUnreported = new long[Logger.ASSERT + 1];
+  private volatile boolean hasUnreported;
+
+  /**
+   * @param maxBytes   limit of the estimated heap size of all queued logs
+   * @param spillFile  required for {@link OverflowPolicy#SPILL_TO_DISK}, ignored otherwise
+   */
+  BoundedLogQueue(int capacity, long maxBytes, @NonNull OverflowPolicy policy,
+                  long blockTimeout, @NonNull TimeUnit unit, @Nullable File spillFile) {
+    this(capacity, maxBytes, policy, blockTimeout, unit, spillFile, null);
+  }
+
+  /**
+   * @param spillExecutor runs the spill thread's work, null for a {@link HandlerThread}
+   */
+  BoundedLogQueue(int capacity, long maxBytes, @NonNull OverflowPolicy policy,
+                  long blockTimeout, @NonNull TimeUnit unit, @Nullable File spillFile,
+                  @Nullable Executor spillExecutor) {
+    if (capacity <= 0 || maxBytes <= 0) {
+      throw new IllegalArgumentException("capacity and maxBytes must be positive");
+    }
+    this.capacity = capacity;
+    this.maxBytes = maxBytes;
+    this.policy = Utils.checkNotNull(policy);
+    this.blockTimeoutNanos = unit.toNanos(blockTimeout);
+    if (policy == OverflowPolicy.SPILL_TO_DISK) {
+      this.spillFile = Utils.checkNotNull(spillFile);
+      this.replayFile = new File(spillFile.getPath() + ".replay");
+    } else {
+      this.spillFile = null;
+      this.replayFile = null;
+    }
+    this.spillExecutor = spillExecutor;
+  }
+
+  /**
+   * Called from any thread.
+   *
+   * @return false if the log was dropped
+   */
+  boolean offer(int priority, @NonNull String message) {
+    return offer(new Record(priority, message));
+  }
+
+  /**
+   * Called from any thread.
+   *
+   * @return false if the log was dropped
+   */
+  boolean offer(@NonNull Record record) {
+    int priority = record.priority;
+    long size = sizeOf(record.message);
+    boolean scheduleSpill = false;
+    ArrayDeque<Record> spillNow = null;
+    lock.lock();
+    try {
+      for (;;) {
+        if (!spilling && (hasRoom(size) || makeRoom(priority, size))) {
+          records.addLast(record);
+          bytes += size;
+          LoggerMetrics.queued(1);
+          return true;
+        }
+        if (policy == OverflowPolicy.BLOCK && onDispatcherThread()) {
+          // waits for the writer without holding up the other adapters
+          expireWaiting(record.enqueuedNanos);
+          waiting.addLast(record);
+          return true;
+        }
+        if (spillFile == null) {
+          countDropped(priority);
+          return false;
+        }
+        if (canSpill(size)) {
+          unspilled.addLast(record);
+          unspilledBytes += size;
+          spilling = true;
+          scheduleSpill = !spillScheduled;
+          spillScheduled = true;
+          return true;
+        }
+        if (!spillLock.isHeldByCurrentThread()) {
+          // spillLock comes first, the writer may take the spill file over meanwhile
+          lock.unlock();
+          spillLock.lock();
+          lock.lock();
+          continue;
+        }
+        // the spill thread is behind and the limits are used up: this thread appends the logs
+        // handed to it so far and its own
+        spillNow = takeUnspilled();
+        spillNow.addLast(record);
+        break;
+      }
+    } finally {
+      lock.unlock();
+      if (scheduleSpill) {
+        scheduleSpill();
+      }
+      if (spillNow == null && spillLock.isHeldByCurrentThread()) {
+        spillLock.unlock();
+      }
+    }
+    try {
+      writeSpill(spillNow);
+    } finally {
+      spillLock.unlock();
+    }
+    return true;
+  }
+
+  /**
+   * Rough heap size of a queued log, its chars and the record around it
+   */
+  private static long sizeOf(@NonNull String message) {
+    return 2L * message.length() + 64;
+  }
+
+  /**
+   * A single log larger than the budget still fits into an empty queue.
+   */
+  private boolean isFull(long size) {
+    return !records.isEmpty() && (records.size() >= capacity || bytes + size > maxBytes);
+  }
+
+  /**
+   * With the lock held: whether a new log may be queued right away
+   */
+  private boolean hasRoom(long size) {
+    return waiting.isEmpty() && !isFull(size);
+  }
+
+  private static boolean onDispatcherThread() {
+    return Thread.currentThread() instanceof LogDispatcher.DispatchThread;
+  }
+
+  /**
+   * Drops the waiting logs whose block timeout is over, with the lock held.
+   */
+  private void expireWaiting(long now) {
+    while (!waiting.isEmpty() && now - waiting.peekFirst().enqueuedNanos > blockTimeoutNanos) {
+      countDropped(waiting.removeFirst().priority);
+    }
+  }
+
+  /**
+   * Queues waiting logs as long as there is room, with the lock held.
+   */
+  private void admitWaiting() {
+    expireWaiting(System.nanoTime());
+    while (!waiting.isEmpty() && !isFull(sizeOf(waiting.peekFirst().message))) {
+      Record record = waiting.removeFirst();
+      records.addLast(record);
+      bytes += sizeOf(record.message);
+      LoggerMetrics.queued(1);
+    }
+  }
+
+  /**
+   * Logs waiting for the spill thread count against the limits of the queue, with the lock held.
+   */
+  private boolean canSpill(long size) {
+    return unspilled.isEmpty()
+        || (records.size() + unspilled.size() < capacity && bytes + unspilledBytes + size <= maxBytes);
+  }
+
+  private void removeQueued(@NonNull Record record) {
+    bytes -= sizeOf(record.message);
+    LoggerMetrics.queued(-1);
+    countDropped(record.priority);
+  }
+
+  private void scheduleSpill() {
+    if (spillExecutor != null) {
+      spillExecutor.execute(spillTask);
+    } else {
+      spillHandler().post(spillTask);
+    }
+  }
+
+  @NonNull
+  private Handler spillHandler() {
+    Handler h = spillHandler;
+    if (h == null) {
+      synchronized (this) {
+        h = spillHandler;
+        if (h == null) {
+          HandlerThread ht = new HandlerThread("AndroidFileLoggerSpill");
+          ht.start();
+          h = new Handler(ht.getLooper());
+          spillHandler = h;
+        }
+      }
+    }
+    return h;
+  }
+
+  /**
+   * Runs on the spill thread: appends the logs handed over so far to the spill file.
+   */
+  private void writeUnspilled() {
+    spillLock.lock();
+    try {
+      ArrayDeque<Record> batch;
+      lock.lock();
+      try {
+        spillScheduled = false;
+        if (unspilled.isEmpty()) {
+          return;
+        }
+        batch = takeUnspilled();
+      } finally {
+        lock.unlock();
+      }
+      writeSpill(batch);
+    } finally {
+      spillLock.unlock();
+    }
+  }
+
+  /**
+   * With the lock held: hands out the logs waiting for the spill thread
+   */
+  @NonNull
+  private ArrayDeque<Record> takeUnspilled() {
+    ArrayDeque<Record> batch = unspilled;
+    unspilled = new ArrayDeque<>();
+    unspilledBytes = 0;
+    return batch;
+  }
+
+  /**
+   * Appends logs to the spill file, with spillLock held. They only count as dropped if the
+   * file can not be written.
+   */
+  private void writeSpill(@NonNull ArrayDeque<Record> batch) {
+    try {
+      if (spill == null) {
+        File folder = spillFile.getParentFile();
+        if (folder != null && !folder.exists()) {
+          folder.mkdirs();
+        }
+        spill = new BufferedOutputStream(new FileOutputStream(spillFile, true), SPILL_BUFFER_SIZE);
+      }
+      for (Record record : batch) {
+        spill.write(record.message.getBytes(CHARSET));
+      }
+      spill.flush();
+    } catch (IOException e) {
+      LoggerMetrics.writeError(e);
+      closeSpill();
+      discard(batch);
+    }
+  }
+
+  /**
+   * With spillLock held
+   */
+  private void closeSpill() {
+    if (spill != null) {
+      try {
+        spill.close();
+      } catch (IOException e1) { /* fail silently */ }
+    }
+    spill = null;
+  }
+
+  /**
+   * Applies the overflow policy to a full queue, with the lock held.
+   *
+   * @return true if the new log may be added
+   */
+  private boolean makeRoom(int priority, long size) {
+    switch (policy) {
+      case BLOCK:
+        // the dispatcher thread hands its log over instead of waiting
+        return !onDispatcherThread() && awaitNotFull(size);
+      case DROP_OLDEST:
+        while (isFull(size)) {
+          removeQueued(records.removeFirst());
+        }
+        return true;
+      case DROP_BY_PRIORITY:
+        if (priority < Logger.ERROR) {
+          return false;
+        }
+        Iterator<Record> iterator = records.iterator();
+        while (isFull(size) && iterator.hasNext()) {
+          Record queued = iterator.next();
+          if (queued.priority < Logger.ERROR) {
+            iterator.remove();
+            removeQueued(queued);
+          }
+        }
+        // only ERROR and ASSERT left, the oldest ones go
+        while (isFull(size)) {
+          removeQueued(records.removeFirst());
+        }
+        return true;
+      case SPILL_TO_DISK:
+      case DROP_NEWEST:
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Waits up to the block timeout, with the lock held. Never called on the dispatcher thread.
+   *
+   * @return true if there is room now
+   */
+  private boolean awaitNotFull(long size) {
+    long nanos = blockTimeoutNanos;
+    try {
+      while (!hasRoom(size)) {
+        if (nanos <= 0) {
+          return false;
+        }
+        nanos = notFull.awaitNanos(nanos);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    return true;
+  }
+
+  private void countDropped(int priority) {
+    int level = priority >= 0 && priority <= Logger.ASSERT ? priority : 0;
+    droppedTotal[level]++;
+    droppedUnreported[level]++;
+    hasUnreported = true;
+    LoggerMetrics.dropped(priority);
+  }
+
+  /**
+   * Called by the writer. Hands over everything queued and leaves {@code empty} in its place,
+   * so that the writer can reuse the deque of the previous batch.
+   */
+  @NonNull
+  ArrayDeque<Record> drain(@NonNull ArrayDeque<Record> empty) {
+    return drain(empty, null);
+  }
+
+  /**
+   * Called by the writer. Hands over everything queued and leaves {@code empty} in its place,
+   * so that the writer can reuse the deque of the previous batch.
+   *
+   * <p>While logs are spilled, the spill file is moved to {@link #replayFile()} at the same time
+   * and the logs the spill thread did not write yet are added to {@code unspilledOut}. The writer
+   * has to write the returned batch, the replay file and then {@code unspilledOut}.</p>
+   */
+  @NonNull
+  ArrayDeque<Record> drain(@NonNull ArrayDeque<Record> empty, @Nullable ArrayDeque<Record> unspilledOut) {
+    // waits for a spill write in progress, callers only ever wait for the swap below
+    spillLock.lock();
+    try {
+      lock.lock();
+      try {
+        ArrayDeque<Record> batch = records;
+        records = empty;
+        bytes = 0;
+        LoggerMetrics.queued(-batch.size());
+        admitWaiting();
+        if (spilling) {
+          closeSpill();
+          // the writer always replays before the next drain, so there is no older replay file left
+          if (spillFile.exists() && !spillFile.renameTo(replayFile)) {
+            replayFile.delete();
+            spillFile.renameTo(replayFile);
+          }
+          Utils.checkNotNull(unspilledOut).addAll(unspilled);
+          unspilled.clear();
+          unspilledBytes = 0;
+          spilling = false;
+        }
+        notFull.signalAll();
+        return batch;
+      } finally {
+        lock.unlock();
+      }
+    } finally {
+      spillLock.unlock();
+    }
+  }
+
+  /**
+   * @return file of spilled logs handed over by {@link #drain(ArrayDeque, ArrayDeque)}, which may
+   * also be left by a previous process, null without {@link OverflowPolicy#SPILL_TO_DISK}
+   */
+  @Nullable
+  File replayFile() {
+    return replayFile;
+  }
+
+  /**
+   * Called once by the writer, after the replay file is gone. Hands over a spill file left by
+   * a previous process.
+   *
+   * @return true if there is something to replay
+   */
+  boolean recoverSpill() {
+    spillLock.lock();
+    try {
+      lock.lock();
+      try {
+        return !spilling && spillFile != null && spillFile.exists() && spillFile.renameTo(replayFile);
+      } finally {
+        lock.unlock();
+      }
+    } finally {
+      spillLock.unlock();
+    }
+  }
+
+  boolean isEmpty() {
+    lock.lock();
+    try {
+      return records.isEmpty() && waiting.isEmpty() && !spilling;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Called by the writer for logs it could not write, they count as dropped.
+   */
+  void discard(@NonNull Iterable<Record> batch) {
+    lock.lock();
+    try {
+      for (Record record : batch) {
+        countDropped(record.priority);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return whether logs were dropped since the last {@link #takeDropReport()}
+   */
+  boolean hasUnreportedDrops() {
+    return hasUnreported;
+  }
+
+  /**
+   * Hands out the logs dropped since the last report and forgets them.
+   *
+   * @return e.g. "Logger dropped 12 messages (DEBUG 10, WARN 2)", null if nothing was dropped
+   * or the queue is still under pressure
+   */
+  @Nullable
+  String takeDropReport() {
+    if (!hasUnreported) {
+      return null;
+    }
+    lock.lock();
+    try {
+      if (!hasUnreported || spilling || !waiting.isEmpty()
+          || records.size() > capacity / 2 || bytes > maxBytes / 2) {
+        return null;
+      }
+      long sum = 0;
+      StringBuilder levels = new StringBuilder();
+      for (int level = 0; level < droppedUnreported.length; level++) {
+        long count = droppedUnreported[level];
+        if (count == 0) {
+          continue;
+        }
+        sum += count;
+        if (levels.length() > 0) {
+          levels.append(", ");
+        }
+        levels.append(Utils.logLevel(level)).append(' ').append(count);
+        droppedUnreported[level] = 0;
+      }
+      hasUnreported = false;
+      return "Logger dropped " + sum + " messages (" + levels + ")";
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Called by the writer's format on the thread which logs, after its logs and when the
+   * dispatcher is idle: logs the drop report through the format once there is one.
+   *
+   * @return nanoseconds until this should be called again, -1 if nothing is left to report
+   */
+  long reportDropped(@NonNull FormatStrategy formatStrategy) {
+    if (!hasUnreported) {
+      return -1;
+    }
+    String report = takeDropReport();
+    if (report != null) {
+      formatStrategy.log(Logger.WARN, DROP_REPORT_TAG, report);
+    }
+    return hasUnreported ? DROP_REPORT_RETRY_NANOS : -1;
+  }
+
+  /**
+   * @return number of logs of the given level dropped so far
+   */
+  long droppedCount(int priority) {
+    if (priority < 0 || priority > Logger.ASSERT) {
+      return 0;
+    }
+    lock.lock();
+    try {
+      return droppedTotal[priority];
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,205 @@
+package com.example.loggerpluslib;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Collapses consecutive identical logs in front of another {@link FormatStrategy}.
+ *
+ * <p>The first log of a run is passed on right away. Its repeats, same level, tag and message,
+ * are only counted, and replaced by one line when the run ends or the timeout elapses:</p>
+ *
+ * <pre>
+ *   last message repeated 2999 times (first 12:00:01.250, last 12:00:31.870)
+ * </pre>
+ *
+ * <p>The count is written by the thread which logs: with {@link Logger} the dispatcher thread,
+ * which writes it when it is idle after the timeout and on {@link Logger#flush()}, so it keeps its
+ * place among the other logs.</p>
+ *
+ * <p>Logs with typed fields are never collapsed: they end the run and are passed on with their
+ * fields.</p>
+ *
+ * <pre><code>
+ *   FormatStrategy csvFormat = CoalescingFormatStrategy.newBuilder()
+ *       .formatStrategy(CsvFormatStrategy.newBuilder().build())
+ *       .timeout(10, TimeUnit.SECONDS)   // (Optional) Default 5 seconds
+ *       .build();
+ *   Logger.addLogAdapter(new DiskLogAdapter(csvFormat));
+ * </code></pre>
+ */
+public class CoalescingFormatStrategy implements StructuredFormatStrategy {
+
+  @NonNull
+  private final FormatStrategy formatStrategy;
+  private final long timeoutNanos;
+
+  @NonNull
+  private final TimestampRenderer timestampRenderer =
+      new TimestampRenderer(new SimpleDateFormat("HH:mm:ss.SSS", Locale.UK));
+
+  /**
+   * The log the run is made of, guarded by this
+   */
+  private int lastPriority;
+  @Nullable
+  private String lastTag;
+  @Nullable
+  private String lastMessage;
+
+  /**
+   * Repeats held back so far, with the times of the run and when their count is due
+   */
+  private int repeats;
+  private long firstMillis = -1;
+  private long lastMillis;
+  private long dueNanos;
+
+  private CoalescingFormatStrategy(@NonNull Builder builder) {
+    formatStrategy = builder.formatStrategy;
+    timeoutNanos = TimeUnit.MILLISECONDS.toNanos(builder.timeoutMillis);
+  }
+
+  @NonNull
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  @Override
+  public synchronized void log(int priority, @Nullable String tag, @NonNull String message) {
+    Utils.checkNotNull(message);
+
+    if (isRepeat(priority, tag, message)) {
+      long nanos = System.nanoTime();
+      if (repeats > 0 && nanos - dueNanos >= 0) {
+        // a run longer than the timeout, its count so far is written and a new one starts
+        flushRepeats();
+      }
+      long now = System.currentTimeMillis();
+      if (firstMillis < 0) {
+        firstMillis = now;
+        dueNanos = nanos + timeoutNanos;
+      }
+      repeats++;
+      lastMillis = now;
+      return;
+    }
+
+    flushRepeats();
+    lastPriority = priority;
+    lastTag = tag;
+    lastMessage = message;
+    formatStrategy.log(priority, tag, message);
+  }
+
+  @Override
+  public synchronized void log(int priority, @Nullable String tag, @NonNull String message,
+                               @NonNull LogFields fields) {
+    Utils.checkNotNull(message);
+
+    flushRepeats();
+    lastMessage = null;
+    if (formatStrategy instanceof StructuredFormatStrategy) {
+      ((StructuredFormatStrategy) formatStrategy).log(priority, tag, message, fields);
+    } else {
+      formatStrategy.log(priority, tag, LogFields.render(message, fields));
+    }
+  }
+
+  private boolean isRepeat(int priority, @Nullable String tag, @NonNull String message) {
+    return lastMessage != null
+        && priority == lastPriority
+        && Utils.equals(tag, lastTag)
+        && message.equals(lastMessage);
+  }
+
+  /**
+   * @return true if the wrapped strategy prints the caller's method stack
+   * @see LogAdapter#needsCallerStack()
+   */
+  boolean needsCallerStack() {
+    return formatStrategy instanceof PrettyFormatStrategy
+        && ((PrettyFormatStrategy) formatStrategy).showsMethodStack();
+  }
+
+  /**
+   * Called by the adapter when the dispatcher thread is idle, writes the count once it is due.
+   *
+   * @return nanoseconds until the held back count or the wrapped strategy is due, -1 if neither
+   * holds anything back
+   * @see LogAdapter#onIdle(boolean)
+   */
+  synchronized long onIdle(boolean flushing) {
+    long left = -1;
+    if (repeats > 0) {
+      left = dueNanos - System.nanoTime();
+      if (flushing || left <= 0) {
+        flushRepeats();
+        left = -1;
+      }
+    }
+    long next = FormattingLogAdapter.onIdle(formatStrategy, flushing);
+    return left < 0 || (next >= 0 && next < left) ? next : left;
+  }
+
+  private void flushRepeats() {
+    if (repeats == 0) {
+      return;
+    }
+    if (repeats == 1) {
+      // a single repeat is shorter as itself
+      formatStrategy.log(lastPriority, lastTag, lastMessage);
+      repeats = 0;
+      firstMillis = -1;
+      return;
+    }
+    StringBuilder builder = new StringBuilder(80)
+        .append("last message repeated ").append(repeats).append(" times (first ");
+    timestampRenderer.appendTo(builder, firstMillis);
+    builder.append(", last ");
+    timestampRenderer.appendTo(builder, lastMillis);
+    builder.append(')');
+    formatStrategy.log(lastPriority, lastTag, builder.toString());
+    repeats = 0;
+    // further repeats start a new run
+    firstMillis = -1;
+  }
+
+  public static final class Builder {
+
+    FormatStrategy formatStrategy;
+    long timeoutMillis = TimeUnit.SECONDS.toMillis(5);
+
+    private Builder() {
+    }
+
+    /**
+     * Receives the first log of each run and the repeat counts
+     */
+    @NonNull
+    public Builder formatStrategy(@NonNull FormatStrategy val) {
+      formatStrategy = Utils.checkNotNull(val);
+      return this;
+    }
+
+    /**
+     * Longest time repeats are held back before their count is written
+     */
+    @NonNull
+    public Builder timeout(long duration, @NonNull TimeUnit unit) {
+      timeoutMillis = unit.toMillis(duration);
+      return this;
+    }
+
+    @NonNull
+    public CoalescingFormatStrategy build() {
+      Utils.checkNotNull(formatStrategy);
+      return new CoalescingFormatStrategy(this);
+    }
+  }
+}
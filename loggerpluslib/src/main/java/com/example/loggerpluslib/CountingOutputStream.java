@@ -0,0 +1,48 @@
+package com.example.loggerpluslib;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * Adds the bytes written to a log file to {@link LoggerMetrics}, and to the size a
+ * {@link RollingFileStrategy} keeps of the file.
+ */
+final class CountingOutputStream extends FilterOutputStream {
+
+  @NonNull
+  private final File file;
+  @Nullable
+  private final RollingFileStrategy rollingStrategy;
+
+  CountingOutputStream(@NonNull OutputStream out, @NonNull File file, @NonNull FileStrategy fileStrategy) {
+    super(Utils.checkNotNull(out));
+    this.file = Utils.checkNotNull(file);
+    rollingStrategy = fileStrategy instanceof RollingFileStrategy ? (RollingFileStrategy) fileStrategy : null;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    out.write(b);
+    counted(1);
+  }
+
+  @Override
+  public void write(@NonNull byte[] b, int off, int len) throws IOException {
+    // FilterOutputStream would write byte by byte
+    out.write(b, off, len);
+    counted(len);
+  }
+
+  private void counted(long count) {
+    LoggerMetrics.bytesWritten(count);
+    if (rollingStrategy != null) {
+      rollingStrategy.written(file, count);
+    }
+  }
+}
@@ -100,6 +100,7 @@ public class CrashHandler implements UncaughtExceptionHandler {
 
 //        Logger.E( TAG, "捕捉到Throwable,ex.toString():\n" + ex.toString());
         Logger.E("捕捉到Throwable:\n" + e2Str(ex));
+        Logger.flush();
 
 //        //使用Toast来显示异常信息
 //        new Thread() {
@@ -110,6 +110,7 @@ public class CrashManager {
     }
 
     private void throwToSystemHandle(Throwable e) {
+        Logger.flush();
         mSystemUncaughtHandler.uncaughtException(Thread.currentThread(), e);
     }
 
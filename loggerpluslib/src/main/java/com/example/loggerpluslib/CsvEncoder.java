@@ -0,0 +1,153 @@
+package com.example.loggerpluslib;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+
+/**
+ * Builds one CSV record (RFC 4180) into a reused buffer.
+ *
+ * <p>A field is put in double quotes when it holds a separator, a double quote or a line break,
+ * double quotes inside are doubled. Each thread has its own encoder, so encoding only allocates
+ * the final String.</p>
+ *
+ * <pre><code>
+ *   String line = CsvEncoder.get().begin()
+ *       .field(millis)
+ *       .field(tag)
+ *       .quotedField(message)
+ *       .end(NEW_LINE);
+ * </code></pre>
+ */
+final class CsvEncoder {
+
+  private static final char SEPARATOR = ',';
+  private static final char QUOTE = '"';
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  /**
+   * A buffer grown beyond this by a huge log is not kept
+   */
+  private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+  private static final ThreadLocal<CsvEncoder> ENCODERS = new ThreadLocal<CsvEncoder>() {
+    @Override
+    protected CsvEncoder initialValue() {
+      return new CsvEncoder();
+    }
+  };
+
+  @NonNull
+  private StringBuilder line = new StringBuilder(INITIAL_CAPACITY);
+  private boolean firstField;
+
+  @NonNull
+  private final StringBuilder scratch = new StringBuilder(32);
+
+  private CsvEncoder() {
+  }
+
+  /**
+   * @return the encoder of the calling thread
+   */
+  @NonNull
+  static CsvEncoder get() {
+    return ENCODERS.get();
+  }
+
+  /**
+   * Starts a new record, everything appended before is discarded.
+   */
+  @NonNull
+  CsvEncoder begin() {
+    if (line.capacity() > MAX_RETAINED_CAPACITY) {
+      line = new StringBuilder(INITIAL_CAPACITY);
+    } else {
+      line.setLength(0);
+    }
+    firstField = true;
+    return this;
+  }
+
+  @NonNull
+  CsvEncoder field(long value) {
+    separate();
+    line.append(value);
+    return this;
+  }
+
+  /**
+   * A timestamp, quoted only if the pattern makes it necessary.
+   */
+  @NonNull
+  CsvEncoder field(@NonNull TimestampRenderer renderer, long millis) {
+    scratch.setLength(0);
+    renderer.appendTo(scratch, millis);
+    return field(scratch);
+  }
+
+  /**
+   * Quoted only if needed, null is written as "null".
+   */
+  @NonNull
+  CsvEncoder field(@Nullable CharSequence value) {
+    separate();
+    int start = line.length();
+    if (appendEscaped(value == null ? "null" : value)) {
+      line.insert(start, QUOTE);
+      line.append(QUOTE);
+    }
+    return this;
+  }
+
+  /**
+   * Always quoted, null is written as "null".
+   */
+  @NonNull
+  CsvEncoder quotedField(@Nullable CharSequence value) {
+    separate();
+    line.append(QUOTE);
+    appendEscaped(value == null ? "null" : value);
+    line.append(QUOTE);
+    return this;
+  }
+
+  /**
+   * @return the record followed by {@code newLine}
+   */
+  @NonNull
+  String end(@NonNull String newLine) {
+    line.append(newLine);
+    return line.toString();
+  }
+
+  private void separate() {
+    if (firstField) {
+      firstField = false;
+    } else {
+      line.append(SEPARATOR);
+    }
+  }
+
+  /**
+   * Copies the value and doubles its quotes, in one pass.
+   *
+   * @return true if the value has to be quoted
+   */
+  private boolean appendEscaped(@NonNull CharSequence value) {
+    boolean needsQuotes = false;
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c == QUOTE) {
+        line.append(QUOTE);
+        needsQuotes = true;
+      } else if (c == SEPARATOR || c == '\n' || c == '\r') {
+        needsQuotes = true;
+      }
+      line.append(c);
+    }
+    return needsQuotes;
+  }
+}
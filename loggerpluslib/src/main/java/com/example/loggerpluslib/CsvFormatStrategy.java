@@ -16,14 +16,9 @@ import java.util.Locale;
 public class CsvFormatStrategy implements FormatStrategy {
 
   private static final String NEW_LINE = System.getProperty("line.separator");
-  private static final String NEW_LINE_REPLACEMENT = " <br> ";
-  private static final String SEPARATOR = ",";
-  private static final String DOUBLE_QUOTES = "\"";
 
   @NonNull
-  private final Date date;
-  @NonNull
-  private final SimpleDateFormat dateFormat;
+  private final TimestampRenderer timestampRenderer;
   @NonNull
   private final LogStrategy logStrategy;
   @Nullable
@@ -32,8 +27,7 @@ public class CsvFormatStrategy implements FormatStrategy {
   private CsvFormatStrategy(@NonNull Builder builder) {
     Utils.checkNotNull(builder);
 
-    date = builder.date;
-    dateFormat = builder.dateFormat;
+    timestampRenderer = new TimestampRenderer(builder.dateFormat);
     logStrategy = builder.logStrategy;
     tag = builder.tag;
   }
@@ -50,51 +44,26 @@ public class CsvFormatStrategy implements FormatStrategy {
 //    String tag = formatTag(onceOnlyTag);
     String tag = onceOnlyTag;
 
-    date.setTime(System.currentTimeMillis());
-
-    StringBuilder builder = new StringBuilder();
-
-    // machine-readable date/time
-    builder.append(Long.toString(date.getTime()));
-
-    // human-readable date/time
-    builder.append(SEPARATOR);
-    builder.append(dateFormat.format(date));
-
-    // level
-    builder.append(SEPARATOR);
-    builder.append(Utils.logLevel(priority));
-
-    // tag
-    builder.append(SEPARATOR);
-    builder.append(tag);
-
-    // message
-    builder.append(SEPARATOR);
-//    if (message.contains(NEW_LINE)) {
-//      // a new line would break the CSV format, so we replace it here
-//      message = message.replaceAll(NEW_LINE, NEW_LINE_REPLACEMENT);
-//    }
-//    /**
-//     * 方式一：为了能在Excel中显示正确格式，替换掉message中的英文逗号和双引号并在message两端加双引号
-//     * 但会破坏原来数据，待优化
-//     */
-//    if (message.contains(SEPARATOR)) {
-//      message = message.replaceAll(SEPARATOR, "，");
-//    }
-//    if (message.contains(DOUBLE_QUOTES)) {
-//      message = message.replaceAll(DOUBLE_QUOTES, "“");
-//    }
-//    builder.append(DOUBLE_QUOTES + message + DOUBLE_QUOTES);
-    /**
-     * 方式二：仅在message两端加双引号，Excel打开格式会不正确，因此需要使用另外的CSV软件打开
-     */
-    builder.append(DOUBLE_QUOTES + message + DOUBLE_QUOTES);
+    long millis = System.currentTimeMillis();
+
+    // 按 RFC 4180 转义：字段含逗号、双引号或换行时加双引号，内部双引号写两次；message 总是加双引号
+    String line = CsvEncoder.get().begin()
+        .field(millis)                           // machine-readable date/time
+        .field(timestampRenderer, millis)        // human-readable date/time
+        .field(Utils.logLevel(priority))         // level
+        .field(tag)                              // tag
+        .quotedField(message)                    // message
+        .end(NEW_LINE);
 
-    // new line
-    builder.append(NEW_LINE);
+    logStrategy.log(priority, tag, line);
+    DiskLogStrategy.reportDropped(logStrategy, this);
+  }
 
-    logStrategy.log(priority, tag, builder.toString());
+  /**
+   * @see LogAdapter#onIdle(boolean)
+   */
+  long onIdle() {
+    return DiskLogStrategy.reportDropped(logStrategy, this);
   }
 
   @Nullable
@@ -115,6 +84,10 @@ public class CsvFormatStrategy implements FormatStrategy {
     private Builder() {
     }
 
+    /**
+     * @deprecated not used anymore, every log takes the current time
+     */
+    @Deprecated
     @NonNull
     public Builder date(@Nullable Date val) {
       date = val;
@@ -141,9 +114,6 @@ public class CsvFormatStrategy implements FormatStrategy {
 
     @NonNull
     public CsvFormatStrategy build() {
-      if (date == null) {
-        date = new Date();
-      }
       if (dateFormat == null) {
         dateFormat = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss.SSS", Locale.UK);
       }
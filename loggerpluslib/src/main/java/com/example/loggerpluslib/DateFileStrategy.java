@@ -10,57 +10,82 @@ import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
+import java.util.TreeSet;
 
 public class DateFileStrategy implements FileStrategy {
 
     private final String PATTERN = "yyyy-MM-dd";
-    private final String SUFFIX =  ".csv";
+    private static final String DEFAULT_SUFFIX =  ".csv";
+    private static final int KEEP_DAYS = 7;
+
+    private final String SUFFIX;
 
     private String folderPath;
 
+    private final TimestampRenderer dayRenderer = new TimestampRenderer(new SimpleDateFormat(PATTERN, Locale.getDefault()));
+
+    //当天的日志文件，过了零点才重新生成
+    private File currentFile;
+    private long currentFileEndMillis;
+    private boolean cleared;
+
+    //已知的日期文件名，按日期排序。只在第一次写入时列一次目录，之后跨天只删最旧的几个
+    private final TreeSet<String> dayFiles = new TreeSet<>();
+
     public DateFileStrategy(String folderPath) {
+        this(folderPath, DEFAULT_SUFFIX);
+    }
+
+    /**
+     * @param suffix 日志文件后缀，例如 ".csv"
+     */
+    public DateFileStrategy(String folderPath, String suffix) {
+        this.SUFFIX = Utils.checkNotNull(suffix);
         if(folderPath == null){
             folderPath = generateDefaultPath();
         }
         this.folderPath = folderPath;
-        clearOldFiles();
+        //旧文件在写日志的线程上切换到新的一天时清理，这里不访问磁盘
     }
 
     @Override
     public void clearOldFiles() {
-        File directory = new File(folderPath);
-
-        if (!directory.exists()) {
-            Logger.W(directory + " does not exist");
-            return;
-        }
-
-        if (!directory.isDirectory()) {
-            Logger.W(directory + " is not a directory");
-            return;
-        }
-
-        File[] files = directory.listFiles();
-        if (files == null) {  // null if security restricted
+        File[] files = new File(folderPath).listFiles();
+        if (files == null) {  // missing, not a directory or security restricted
             return ;
         }
 
+        //yyyy-MM-dd按字符串排序即按日期排序，比较文件名即可，不用逐个解析日期
+        String oldestKept = oldestKeptName();
+        dayFiles.clear();
         for (File file : files) {
-            String dateStr = file.getName().replace(SUFFIX, "");
-            Date date = null;
-            try {
-                date = stringToDate(dateStr);
-            } catch (ParseException e) {
-                file.delete();//文件格式不对则删除
-                e.printStackTrace();
+            String name = file.getName();
+            if (!name.endsWith(SUFFIX)) {
+                continue;//其他格式的日志文件由各自的FileStrategy管理
             }
-            if(!isLatestWeek(date)){
+            if (!isDayFileName(name)) {
+                file.delete();//文件格式不对则删除
+            } else if (name.compareTo(oldestKept) < 0) {
                 file.delete();//超出七天的日志文件删除
+            } else {
+                dayFiles.add(name);
             }
         }
 
     }
 
+    //跨天时只删除已知文件中过期的，不再列目录
+    private void deleteExpiredFiles() {
+        String oldestKept = oldestKeptName();
+        while (!dayFiles.isEmpty() && dayFiles.first().compareTo(oldestKept) < 0) {
+            new File(folderPath, dayFiles.pollFirst()).delete();
+        }
+    }
+
+    private String oldestKeptName() {
+        return dayString(daysBefore(System.currentTimeMillis(), KEEP_DAYS - 1)) + SUFFIX;
+    }
+
     @Override
     public String generateDefaultPath() {
         String diskPath = Environment.getExternalStorageDirectory().getAbsolutePath();
@@ -70,6 +95,10 @@ public class DateFileStrategy implements FileStrategy {
     @Override
     public File getCurrentFile() {
         Utils.checkNotNull(folderPath);
+        long now = System.currentTimeMillis();
+        if (currentFile != null && now < currentFileEndMillis) {
+            return currentFile;
+        }
         //
         File folder = new File(folderPath);
         if (!folder.exists()) {
@@ -77,14 +106,58 @@ public class DateFileStrategy implements FileStrategy {
             folder.mkdirs();
         }
         //
-        File currentFile = new File(folder, dateToString() + SUFFIX);
+        boolean newDay = currentFile != null;
+        currentFile = new File(folder, dayString(now) + SUFFIX);
+        currentFileEndMillis = nextDayStartMillis(now);
+        //第一次写入时列目录清理一次，调用方是写日志的后台线程
+        if (!cleared) {
+            cleared = true;
+            clearOldFiles();
+        } else if (newDay) {
+            deleteExpiredFiles();
+        }
+        dayFiles.add(currentFile.getName());
         return currentFile;
     }
 
+    private long nextDayStartMillis(long now) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(now);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        return calendar.getTimeInMillis();
+    }
+
     public String dateToString() {
-        Date now = new Date();
-        String date = new SimpleDateFormat(PATTERN, Locale.getDefault()).format(now);
-        return date;
+        return dayString(System.currentTimeMillis());
+    }
+
+    private String dayString(long millis) {
+        return dayRenderer.format(millis);
+    }
+
+    private static long daysBefore(long now, int days) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(now);
+        calendar.add(Calendar.DAY_OF_MONTH, -days);
+        return calendar.getTimeInMillis();
+    }
+
+    //文件名是否为 yyyy-MM-dd + 后缀
+    private boolean isDayFileName(String name) {
+        if (name.length() != PATTERN.length() + SUFFIX.length()) {
+            return false;
+        }
+        for (int i = 0; i < PATTERN.length(); i++) {
+            char c = name.charAt(i);
+            if (PATTERN.charAt(i) == '-' ? c != '-' : (c < '0' || c > '9')) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public Date stringToDate(String str) throws ParseException {
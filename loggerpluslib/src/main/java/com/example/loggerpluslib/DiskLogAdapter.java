@@ -2,33 +2,33 @@ package com.example.loggerpluslib;
 
 
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
 
 
 /**
  * This is used to saves log messages to the disk.
  * By default it uses {@link CsvFormatStrategy} to translates text message into CSV format.
  */
-public class DiskLogAdapter extends LogAdapter {
-
-  @NonNull
-  private final FormatStrategy formatStrategy;
+public class DiskLogAdapter extends FormattingLogAdapter {
 
   public DiskLogAdapter() {
-    formatStrategy = CsvFormatStrategy.newBuilder().build();
+    this(CsvFormatStrategy.newBuilder().build());
   }
 
   public DiskLogAdapter(@NonNull FormatStrategy formatStrategy) {
-    this.formatStrategy = Utils.checkNotNull(formatStrategy);
+    this(formatStrategy, Logger.VERBOSE);
   }
 
-  @Override
-  public boolean isLoggable(int priority, @Nullable String tag) {
-    return priority >= Logger.VERBOSE;
+  /**
+   * @param minPriority logs below this level are not saved, e.g. {@link Logger#INFO}
+   */
+  public DiskLogAdapter(@NonNull FormatStrategy formatStrategy, int minPriority) {
+    this(formatStrategy, TagLevels.of(minPriority));
   }
 
-  @Override
-  public void log(int priority, @Nullable String tag, @NonNull String message) {
-    formatStrategy.log(priority, tag, message);
+  /**
+   * @param tagLevels minimum levels per tag, logs below them are not saved
+   */
+  public DiskLogAdapter(@NonNull FormatStrategy formatStrategy, @NonNull TagLevels tagLevels) {
+    super(formatStrategy, tagLevels);
   }
 }
@@ -8,9 +8,19 @@ import android.os.Message;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 //import android.support.annotation.NonNull;
 //import android.support.annotation.Nullable;
@@ -22,26 +32,56 @@ import java.io.IOException;
  * implementing classes are free to directly perform I/O operations there.
  *
  * Writes all logs to the disk with CSV format.
+ *
+ * <p>At most {@link Builder#capacity(int)} logs and {@link Builder#maxPendingBytes(long)} of heap
+ * wait for the writer; what happens to more logs is decided by the {@link OverflowPolicy}. Dropped
+ * logs are counted per level, see {@link #getDroppedCount(int)} and {@link LoggerMetrics}. Once the
+ * writer has caught up, a WARN log with the number of dropped logs per level is written through the
+ * format, e.g. as a row of {@link CsvFormatStrategy}.</p>
+ *
+ * <pre><code>
+ *   LogStrategy logStrategy = DiskLogStrategy.newBuilder()
+ *       .logDiskPath(logDiskPath)
+ *       .capacity(5000)                                   // (Optional) Default 10000 logs
+ *       .maxPendingBytes(1024 * 1024)                     // (Optional) Default 4 MB
+ *       .overflowPolicy(OverflowPolicy.DROP_BY_PRIORITY)  // (Optional) Default DROP_BY_PRIORITY
+ *       .build();
+ * </code></pre>
  */
 public class DiskLogStrategy implements LogStrategy {
 
-  private FileStrategy fileStrategy;
+  private static final String SPILL_SUFFIX = ".spill";
 
+  private FileStrategy fileStrategy;
 
   @NonNull
-  private final Handler handler;
+  private final BoundedLogQueue queue;
+
+  /**
+   * Started by the first log, so that creating the strategy costs nothing at app start
+   */
+  @Nullable
+  private volatile WriteHandler handler;
 
   public DiskLogStrategy() {
-    this(null);
+    this((String) null);
   }
 
   public DiskLogStrategy(String logDiskPath) {
+    this(newBuilder().logDiskPath(logDiskPath));
+  }
 
-    fileStrategy = new DateFileStrategy(logDiskPath);
-    //
-    HandlerThread ht = new HandlerThread("AndroidFileLogger");
-    ht.start();
-    handler = new DiskLogStrategy.WriteHandler(ht.getLooper(), fileStrategy);
+  private DiskLogStrategy(@NonNull Builder builder) {
+    fileStrategy = builder.fileStrategy != null ? builder.fileStrategy : new DateFileStrategy(builder.logDiskPath);
+    String folderPath = builder.logDiskPath != null ? builder.logDiskPath : fileStrategy.generateDefaultPath();
+    // next to the log folder, so that clearing old log files leaves it alone
+    queue = new BoundedLogQueue(builder.capacity, builder.maxPendingBytes, builder.overflowPolicy,
+        builder.blockTimeoutMillis, TimeUnit.MILLISECONDS, new File(folderPath + SPILL_SUFFIX));
+  }
+
+  @NonNull
+  public static Builder newBuilder() {
+    return new Builder();
   }
 
   @Override
@@ -49,53 +89,245 @@ public class DiskLogStrategy implements LogStrategy {
     Utils.checkNotNull(message);
 
     // do nothing on the calling thread, simply pass the tag/msg to the background thread
-    handler.sendMessage(handler.obtainMessage(level, message));
+    handler().enqueue(level, message);
+  }
+
+  /**
+   * @return number of logs of the given level dropped so far because the queue was full
+   */
+  public long getDroppedCount(int priority) {
+    return queue.droppedCount(priority);
+  }
+
+  /**
+   * Called by a format strategy after its logs and when the dispatcher is idle, so that the drop
+   * report of a DiskLogStrategy is written in the format of the other logs.
+   *
+   * @return nanoseconds until this should be called again, -1 if nothing is left to report
+   * @see BoundedLogQueue#reportDropped(FormatStrategy)
+   */
+  static long reportDropped(@NonNull LogStrategy logStrategy, @NonNull FormatStrategy formatStrategy) {
+    return logStrategy instanceof DiskLogStrategy
+        ? ((DiskLogStrategy) logStrategy).queue.reportDropped(formatStrategy) : -1;
+  }
+
+  @NonNull
+  private WriteHandler handler() {
+    WriteHandler h = handler;
+    if (h == null) {
+      synchronized (this) {
+        h = handler;
+        if (h == null) {
+          HandlerThread ht = new HandlerThread("AndroidFileLogger");
+          ht.start();
+          h = new DiskLogStrategy.WriteHandler(ht.getLooper(), fileStrategy, queue);
+          handler = h;
+        }
+      }
+    }
+    return h;
   }
 
+  /**
+   * Keeps the current log file open and writes all messages pending at the time it runs
+   * with a single flush (group commit).
+   */
   static class WriteHandler extends Handler {
 
+    private static final int MSG_DRAIN = 1;
+
+    /**
+     * Size of the write buffer, a batch larger than this is written in several parts
+     */
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private static final String CHARSET = "UTF-8";
+
     @NonNull
     private final FileStrategy fileStrategy;
 
-    WriteHandler(@NonNull Looper looper, @NonNull FileStrategy fileStrategy) {
+    @NonNull
+    private final BoundedLogQueue pending;
+
+    /**
+     * Deque of the previous batch, handed back to the queue on the next drain
+     */
+    @NonNull
+    private ArrayDeque<BoundedLogQueue.Record> spare = new ArrayDeque<>();
+
+    /**
+     * Logs handed over with the spill file which the spill thread did not write yet
+     */
+    @NonNull
+    private final ArrayDeque<BoundedLogQueue.Record> unspilled = new ArrayDeque<>();
+
+    /**
+     * Whether spilled logs left by a previous process were looked for
+     */
+    private boolean recovered;
+
+    /**
+     * Whether a drain is already queued on the looper, so a burst of logs only posts one message
+     */
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    @Nullable
+    private File currentFile;
+    @Nullable
+    private Writer writer;
+
+    WriteHandler(@NonNull Looper looper, @NonNull FileStrategy fileStrategy, @NonNull BoundedLogQueue pending) {
       super(Utils.checkNotNull(looper));
       //
       this.fileStrategy = Utils.checkNotNull(fileStrategy);
+      this.pending = Utils.checkNotNull(pending);
+    }
+
+    /**
+     * Called from any thread.
+     */
+    void enqueue(int level, @NonNull String content) {
+      // a full queue always has a drain scheduled, so a dropped log needs no message
+      if (pending.offer(level, content) && drainScheduled.compareAndSet(false, true)) {
+        sendEmptyMessage(MSG_DRAIN);
+      }
     }
 
     @SuppressWarnings("checkstyle:emptyblock")
     @Override
     public void handleMessage(@NonNull Message msg) {
-      String content = (String) msg.obj;
-
-      FileWriter fileWriter = null;
-      File logFile = fileStrategy.getCurrentFile();
+      if (msg.what != MSG_DRAIN) {
+        return;
+      }
+      // cleared first: anything enqueued from now on schedules another drain
+      drainScheduled.set(false);
+      File replayFile = pending.replayFile();
+      if (replayFile != null) {
+        // older than anything queued, and it must be gone before the next drain
+        try {
+          replayLeftovers(replayFile);
+        } catch (IOException e) {
+          LoggerMetrics.writeError(e);
+          closeWriter();
+          return;
+        }
+      }
+      if (pending.isEmpty()) {
+        return;
+      }
 
+      ArrayDeque<BoundedLogQueue.Record> batch = pending.drain(spare, unspilled);
       try {
-        fileWriter = new FileWriter(logFile, true);
-
-        writeLog(fileWriter, content);
-
+        Writer fileWriter = openWriter();
+        for (BoundedLogQueue.Record record : batch) {
+          writeLog(fileWriter, record.message);
+        }
+        if (replayFile != null && replayFile.exists()) {
+          replay(fileWriter, replayFile);
+        }
+        for (BoundedLogQueue.Record record : unspilled) {
+          writeLog(fileWriter, record.message);
+        }
         fileWriter.flush();
-        fileWriter.close();
+        long now = System.nanoTime();
+        for (BoundedLogQueue.Record record : batch) {
+          LoggerMetrics.written(now - record.enqueuedNanos);
+        }
       } catch (IOException e) {
-        if (fileWriter != null) {
-          try {
-            fileWriter.flush();
-            fileWriter.close();
-          } catch (IOException e1) { /* fail silently */ }
+        // the batch is lost and counted as dropped, part of it may have reached the file;
+        // the file is opened again for the next batch
+        LoggerMetrics.writeError(e);
+        pending.discard(batch);
+        pending.discard(unspilled);
+        closeWriter();
+      }
+      batch.clear();
+      unspilled.clear();
+      spare = batch;
+      // logs which waited for room were queued by the drain
+      if (!pending.isEmpty() && drainScheduled.compareAndSet(false, true)) {
+        sendEmptyMessage(MSG_DRAIN);
+      }
+    }
+
+    /**
+     * Writes spilled logs which a failed batch or a previous process left behind.
+     */
+    private void replayLeftovers(@NonNull File replayFile) throws IOException {
+      if (replayFile.exists()) {
+        replay(openWriter(), replayFile);
+      }
+      if (!recovered) {
+        recovered = true;
+        if (pending.recoverSpill()) {
+          replay(openWriter(), replayFile);
         }
       }
     }
 
+    /**
+     * Copies spilled logs into the log file and deletes the spill file. A failure part way
+     * through writes the first logs again with the next try.
+     */
+    private void replay(@NonNull Writer fileWriter, @NonNull File replayFile) throws IOException {
+      Reader reader = new InputStreamReader(new FileInputStream(replayFile), CHARSET);
+      try {
+        char[] chars = new char[BUFFER_SIZE];
+        int count;
+        while ((count = reader.read(chars)) != -1) {
+          fileWriter.write(chars, 0, count);
+        }
+        fileWriter.flush();
+      } finally {
+        try {
+          reader.close();
+        } catch (IOException e1) { /* fail silently */ }
+      }
+      replayFile.delete();
+    }
+
+    /**
+     * @return the writer of the current log file, opened again only when the file changes
+     */
+    @NonNull
+    private Writer openWriter() throws IOException {
+      File logFile = fileStrategy.getCurrentFile();
+      if (writer != null && logFile.equals(currentFile)) {
+        return writer;
+      }
+      closeWriter();
+      File folder = logFile.getParentFile();
+      if (folder != null && !folder.exists()) {
+        folder.mkdirs();
+      }
+      boolean created = !logFile.exists();
+      OutputStream out = new CountingOutputStream(new FileOutputStream(logFile, true), logFile, fileStrategy);
+      writer = new BufferedWriter(new OutputStreamWriter(out, CHARSET), BUFFER_SIZE);
+      currentFile = logFile;
+      if (created) {
+        LoggerMetrics.fileCreated();
+      }
+      return writer;
+    }
+
+    private void closeWriter() {
+      if (writer != null) {
+        try {
+          writer.close();
+        } catch (IOException e1) { /* fail silently */ }
+      }
+      writer = null;
+      currentFile = null;
+    }
+
     /**
      * This is always called on a single background thread.
      * Implementing classes must ONLY write to the fileWriter and nothing more.
      * The abstract class takes care of everything else including close the stream and catching IOException
      *
-     * @param fileWriter an instance of FileWriter already initialised to the correct file
+     * @param fileWriter an instance of Writer already initialised to the correct file
      */
-    private void writeLog(@NonNull FileWriter fileWriter, @NonNull String content) throws IOException {
+    private void writeLog(@NonNull Writer fileWriter, @NonNull String content) throws IOException {
       Utils.checkNotNull(fileWriter);
       Utils.checkNotNull(content);
 
@@ -103,4 +335,72 @@ public class DiskLogStrategy implements LogStrategy {
     }
 
   }
+
+  public static final class Builder {
+
+    String logDiskPath;
+    FileStrategy fileStrategy;
+    int capacity = 10000;
+    long maxPendingBytes = 4 * 1024 * 1024;
+    OverflowPolicy overflowPolicy = OverflowPolicy.DROP_BY_PRIORITY;
+    long blockTimeoutMillis = 100;
+
+    private Builder() {
+    }
+
+    /**
+     * Folder of the daily log files, ignored if a {@link #fileStrategy(FileStrategy)} is given
+     */
+    @NonNull
+    public Builder logDiskPath(@Nullable String val) {
+      logDiskPath = val;
+      return this;
+    }
+
+    @NonNull
+    public Builder fileStrategy(@Nullable FileStrategy val) {
+      fileStrategy = val;
+      return this;
+    }
+
+    /**
+     * Maximum number of logs waiting for the writer
+     */
+    @NonNull
+    public Builder capacity(int val) {
+      capacity = val;
+      return this;
+    }
+
+    /**
+     * Maximum estimated heap size of the logs waiting for the writer. With
+     * {@link OverflowPolicy#SPILL_TO_DISK} logs beyond it are written to a file next to the log
+     * folder until the writer has caught up.
+     */
+    @NonNull
+    public Builder maxPendingBytes(long val) {
+      maxPendingBytes = val;
+      return this;
+    }
+
+    @NonNull
+    public Builder overflowPolicy(@NonNull OverflowPolicy val) {
+      overflowPolicy = Utils.checkNotNull(val);
+      return this;
+    }
+
+    /**
+     * How long a log waits for room with {@link OverflowPolicy#BLOCK} before it is dropped
+     */
+    @NonNull
+    public Builder blockTimeout(long timeout, @NonNull TimeUnit unit) {
+      blockTimeoutMillis = unit.toMillis(timeout);
+      return this;
+    }
+
+    @NonNull
+    public DiskLogStrategy build() {
+      return new DiskLogStrategy(this);
+    }
+  }
 }
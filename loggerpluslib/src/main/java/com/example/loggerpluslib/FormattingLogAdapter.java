@@ -0,0 +1,105 @@
+package com.example.loggerpluslib;
+
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+
+/**
+ * Common part of the adapters which hand every log to a {@link FormatStrategy}, filtered by
+ * {@link TagLevels}. Subclasses only pick the defaults.
+ *
+ * @see AndroidLogAdapter
+ * @see DiskLogAdapter
+ */
+abstract class FormattingLogAdapter extends LogAdapter {
+
+  @NonNull
+  private final FormatStrategy formatStrategy;
+
+  @NonNull
+  private final LoggerMetrics.Recorder formatTimes;
+
+  /**
+   * Swapped as a whole by {@link #setTagLevels(TagLevels)}
+   */
+  @NonNull
+  private volatile TagLevels tagLevels;
+
+  FormattingLogAdapter(@NonNull FormatStrategy formatStrategy, @NonNull TagLevels tagLevels) {
+    this.formatStrategy = Utils.checkNotNull(formatStrategy);
+    this.formatTimes = LoggerMetrics.formatTimes(formatStrategy);
+    this.tagLevels = Utils.checkNotNull(tagLevels);
+  }
+
+  /**
+   * Replaces the levels per tag, takes effect for the next log.
+   */
+  public void setTagLevels(@NonNull TagLevels tagLevels) {
+    this.tagLevels = Utils.checkNotNull(tagLevels);
+    Logger.refreshMinPriority();
+  }
+
+  @Override
+  public boolean isLoggable(int priority, @Nullable String tag) {
+    return priority >= tagLevels.minPriority(tag);
+  }
+
+  @Override
+  int minPriority() {
+    return tagLevels.lowestPriority();
+  }
+
+  @Override
+  boolean needsCallerStack() {
+    if (formatStrategy instanceof CoalescingFormatStrategy) {
+      return ((CoalescingFormatStrategy) formatStrategy).needsCallerStack();
+    }
+    return formatStrategy instanceof PrettyFormatStrategy
+        && ((PrettyFormatStrategy) formatStrategy).showsMethodStack();
+  }
+
+  @Override
+  long onIdle(boolean flushing) {
+    return onIdle(formatStrategy, flushing);
+  }
+
+  /**
+   * Lets the format strategies which hold logs back or report dropped logs write them.
+   *
+   * @see LogAdapter#onIdle(boolean)
+   */
+  static long onIdle(@NonNull FormatStrategy formatStrategy, boolean flushing) {
+    if (formatStrategy instanceof CoalescingFormatStrategy) {
+      return ((CoalescingFormatStrategy) formatStrategy).onIdle(flushing);
+    }
+    if (formatStrategy instanceof CsvFormatStrategy) {
+      return ((CsvFormatStrategy) formatStrategy).onIdle();
+    }
+    if (formatStrategy instanceof JsonLinesFormatStrategy) {
+      return ((JsonLinesFormatStrategy) formatStrategy).onIdle();
+    }
+    if (formatStrategy instanceof BinaryFormatStrategy) {
+      return ((BinaryFormatStrategy) formatStrategy).onIdle();
+    }
+    return -1;
+  }
+
+  @Override
+  public void log(int priority, @Nullable String tag, @NonNull String message) {
+    long start = System.nanoTime();
+    formatStrategy.log(priority, tag, message);
+    formatTimes.record(System.nanoTime() - start);
+  }
+
+  @Override
+  void log(int priority, @Nullable String tag, @NonNull String message, @NonNull LogFields fields) {
+    if (!(formatStrategy instanceof StructuredFormatStrategy)) {
+      super.log(priority, tag, message, fields);
+      return;
+    }
+    long start = System.nanoTime();
+    ((StructuredFormatStrategy) formatStrategy).log(priority, tag, message, fields);
+    formatTimes.record(System.nanoTime() - start);
+  }
+}
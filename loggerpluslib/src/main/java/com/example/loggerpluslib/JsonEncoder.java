@@ -0,0 +1,220 @@
+package com.example.loggerpluslib;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+
+/**
+ * Builds one JSON object (RFC 8259) into a reused buffer, written straight as text without
+ * building a {@code JSONObject}.
+ *
+ * <p>Strings are escaped in one pass: quotes, backslashes and control characters, plus U+2028 and
+ * U+2029 so that a line is also valid JavaScript. Each thread has its own encoder, so encoding
+ * only allocates the final String.</p>
+ *
+ * <pre><code>
+ *   String line = JsonEncoder.get().begin()
+ *       .field("time", millis)
+ *       .field("tag", tag)
+ *       .field("message", message)
+ *       .end(NEW_LINE);
+ * </code></pre>
+ */
+final class JsonEncoder {
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  /**
+   * A buffer grown beyond this by a huge log is not kept
+   */
+  private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+  private static final ThreadLocal<JsonEncoder> ENCODERS = new ThreadLocal<JsonEncoder>() {
+    @Override
+    protected JsonEncoder initialValue() {
+      return new JsonEncoder();
+    }
+  };
+
+  @NonNull
+  private StringBuilder line = new StringBuilder(INITIAL_CAPACITY);
+  private boolean firstField;
+
+  @NonNull
+  private final StringBuilder scratch = new StringBuilder(32);
+
+  private JsonEncoder() {
+  }
+
+  /**
+   * @return the encoder of the calling thread
+   */
+  @NonNull
+  static JsonEncoder get() {
+    return ENCODERS.get();
+  }
+
+  /**
+   * Starts a new object, everything appended before is discarded.
+   */
+  @NonNull
+  JsonEncoder begin() {
+    if (line.capacity() > MAX_RETAINED_CAPACITY) {
+      line = new StringBuilder(INITIAL_CAPACITY);
+    } else {
+      line.setLength(0);
+    }
+    line.append('{');
+    firstField = true;
+    return this;
+  }
+
+  @NonNull
+  JsonEncoder field(@NonNull String name, long value) {
+    name(name);
+    line.append(value);
+    return this;
+  }
+
+  /**
+   * NaN and infinity have no JSON form and are written as null.
+   */
+  @NonNull
+  JsonEncoder field(@NonNull String name, double value) {
+    name(name);
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      line.append("null");
+    } else {
+      line.append(value);
+    }
+    return this;
+  }
+
+  @NonNull
+  JsonEncoder field(@NonNull String name, boolean value) {
+    name(name);
+    line.append(value);
+    return this;
+  }
+
+  @NonNull
+  JsonEncoder field(@NonNull String name, @Nullable CharSequence value) {
+    name(name);
+    appendString(value);
+    return this;
+  }
+
+  /**
+   * A timestamp as a string.
+   */
+  @NonNull
+  JsonEncoder field(@NonNull String name, @NonNull TimestampRenderer renderer, long millis) {
+    scratch.setLength(0);
+    renderer.appendTo(scratch, millis);
+    return field(name, scratch);
+  }
+
+  /**
+   * The fields of a {@link LogEvent} as a nested object, nothing if there are none.
+   */
+  @NonNull
+  JsonEncoder fields(@NonNull String name, @Nullable LogFields fields) {
+    if (fields == null || fields.isEmpty()) {
+      return this;
+    }
+    name(name);
+    line.append('{');
+    firstField = true;
+    for (int i = 0; i < fields.size(); i++) {
+      String key = fields.key(i);
+      switch (fields.type(i)) {
+        case LogFields.TYPE_LONG:
+          field(key, fields.longValue(i));
+          break;
+        case LogFields.TYPE_DOUBLE:
+          field(key, fields.doubleValue(i));
+          break;
+        case LogFields.TYPE_BOOLEAN:
+          field(key, fields.booleanValue(i));
+          break;
+        default:
+          field(key, fields.stringValue(i));
+      }
+    }
+    line.append('}');
+    firstField = false;
+    return this;
+  }
+
+  /**
+   * @return the object followed by {@code newLine}
+   */
+  @NonNull
+  String end(@NonNull String newLine) {
+    line.append('}').append(newLine);
+    return line.toString();
+  }
+
+  private void name(@NonNull String name) {
+    if (firstField) {
+      firstField = false;
+    } else {
+      line.append(',');
+    }
+    appendString(name);
+    line.append(':');
+  }
+
+  /**
+   * Quotes and escapes the value, null is written as null.
+   */
+  private void appendString(@Nullable CharSequence value) {
+    if (value == null) {
+      line.append("null");
+      return;
+    }
+    line.append('"');
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          line.append("\\\"");
+          break;
+        case '\\':
+          line.append("\\\\");
+          break;
+        case '\n':
+          line.append("\\n");
+          break;
+        case '\r':
+          line.append("\\r");
+          break;
+        case '\t':
+          line.append("\\t");
+          break;
+        case '\u2028':
+        case '\u2029':
+          appendUnicodeEscape(c);
+          break;
+        default:
+          if (c < 0x20) {
+            appendUnicodeEscape(c);
+          } else {
+            line.append(c);
+          }
+      }
+    }
+    line.append('"');
+  }
+
+  private void appendUnicodeEscape(char c) {
+    line.append("\\u")
+        .append(HEX[(c >> 12) & 0xF])
+        .append(HEX[(c >> 8) & 0xF])
+        .append(HEX[(c >> 4) & 0xF])
+        .append(HEX[c & 0xF]);
+  }
+}
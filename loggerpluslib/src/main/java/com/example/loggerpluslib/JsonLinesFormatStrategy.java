@@ -0,0 +1,115 @@
+package com.example.loggerpluslib;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+
+/**
+ * JSON Lines formatted file logging: one JSON object per line, e.g.
+ *
+ * <pre>
+ *   {"time":1594108800000,"date":"2020.07.07 08:00:00.000","level":"I","tag":"MainActivity[onCreate][42]",
+ *    "thread":"main","message":"request done","fields":{"uid":42,"latency":12.5}}
+ * </pre>
+ *
+ * "fields" holds the typed fields of a {@link LogEvent} and is left out for plain logs.
+ * The lines have the same keys as the JSON output of {@link BinaryLogDecoder}.
+ *
+ * <pre><code>
+ *   FormatStrategy formatStrategy = JsonLinesFormatStrategy.newBuilder()
+ *       .logStrategy(new DiskLogStrategy(logDiskPath))  // (Optional) Default daily .jsonl files
+ *       .build();
+ *   Logger.addLogAdapter(new DiskLogAdapter(formatStrategy));
+ * </code></pre>
+ */
+public class JsonLinesFormatStrategy implements StructuredFormatStrategy {
+
+  private static final String NEW_LINE = "\n";
+
+  @NonNull
+  private final TimestampRenderer timestampRenderer;
+  @NonNull
+  private final LogStrategy logStrategy;
+
+  private JsonLinesFormatStrategy(@NonNull Builder builder) {
+    Utils.checkNotNull(builder);
+
+    timestampRenderer = new TimestampRenderer(builder.dateFormat);
+    logStrategy = builder.logStrategy;
+  }
+
+  @NonNull
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  @Override
+  public void log(int priority, @Nullable String tag, @NonNull String message) {
+    log(priority, tag, message, null);
+  }
+
+  @Override
+  public void log(int priority, @Nullable String tag, @NonNull String message, @Nullable LogFields fields) {
+    Utils.checkNotNull(message);
+
+    long millis = System.currentTimeMillis();
+
+    // 不经过JSONObject，直接转义写入复用的缓冲区
+    String line = JsonEncoder.get().begin()
+        .field("time", millis)
+        .field("date", timestampRenderer, millis)
+        .field("level", Utils.logLevel(priority))
+        .field("tag", tag)
+        .field("thread", Utils.callerThread().getName())
+        .field("message", message)
+        .fields("fields", fields)
+        .end(NEW_LINE);
+
+    logStrategy.log(priority, tag, line);
+    DiskLogStrategy.reportDropped(logStrategy, this);
+  }
+
+  /**
+   * @see LogAdapter#onIdle(boolean)
+   */
+  long onIdle() {
+    return DiskLogStrategy.reportDropped(logStrategy, this);
+  }
+
+  public static final class Builder {
+
+    SimpleDateFormat dateFormat;
+    LogStrategy logStrategy;
+
+    private Builder() {
+    }
+
+    @NonNull
+    public Builder dateFormat(@Nullable SimpleDateFormat val) {
+      dateFormat = val;
+      return this;
+    }
+
+    @NonNull
+    public Builder logStrategy(@Nullable LogStrategy val) {
+      logStrategy = val;
+      return this;
+    }
+
+    @NonNull
+    public JsonLinesFormatStrategy build() {
+      if (dateFormat == null) {
+        dateFormat = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss.SSS", Locale.UK);
+      }
+      if (logStrategy == null) {
+        logStrategy = DiskLogStrategy.newBuilder()
+            .fileStrategy(new DateFileStrategy(null, ".jsonl"))
+            .build();
+      }
+      return new JsonLinesFormatStrategy(this);
+    }
+  }
+}
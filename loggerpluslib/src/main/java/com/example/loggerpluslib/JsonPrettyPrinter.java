@@ -0,0 +1,414 @@
+package com.example.loggerpluslib;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+
+/**
+ * Re-indents JSON in a single pass, without parsing it into a {@code JSONObject} first.
+ *
+ * <p>The input is tokenized once and the indented text goes straight into chunks of about
+ * {@link #CHUNK_SIZE} chars, each ending at a line break, which are handed out as soon as they are
+ * full. So a large payload never exists as a second complete copy.</p>
+ *
+ * <p>Validation happens along the way. Json which fits into the first chunk is validated before
+ * anything is handed out; for larger json the chunks before an error have already been handed
+ * out when the error is found. Strings and numbers are copied as they are, escapes included.</p>
+ *
+ * <p>Output can be limited to a number of UTF-8 bytes and to a number of elements per array,
+ * the rest is replaced by a marker line. Arrays beyond the limit are still validated.</p>
+ */
+final class JsonPrettyPrinter {
+
+  /**
+   * Receives the indented text in order
+   */
+  interface Output {
+    void write(@NonNull String chunk);
+  }
+
+  static final int UNLIMITED = Integer.MAX_VALUE;
+
+  /**
+   * Size of a chunk in chars, a line longer than this makes a larger chunk
+   */
+  private static final int CHUNK_SIZE = 3000;
+
+  private static final int OBJECT = 0;
+  private static final int ARRAY = 1;
+
+  /**
+   * What the tokenizer expects next
+   */
+  private static final int EXPECT_VALUE = 0;
+  private static final int EXPECT_KEY = 1;
+  private static final int EXPECT_COLON = 2;
+  private static final int EXPECT_COMMA_OR_CLOSE = 3;
+  /**
+   * Right after '{' or '[': a key or value, or the closing bracket
+   */
+  private static final int EXPECT_FIRST = 4;
+  private static final int EXPECT_END = 5;
+
+  private final int indent;
+  private final long maxBytes;
+  private final int maxArrayElements;
+
+  @NonNull
+  private final Output output;
+  @NonNull
+  private final StringBuilder chunk = new StringBuilder(CHUNK_SIZE + 256);
+  private long bytes;
+  private boolean truncated;
+  private boolean handedOut;
+
+  /**
+   * Containers enclosing the current position, grown on demand
+   */
+  @NonNull
+  private int[] containers = new int[16];
+  @NonNull
+  private int[] elementCounts = new int[16];
+  private int depth;
+
+  /**
+   * Depth of the array whose remaining elements are skipped, -1 if none
+   */
+  private int skipDepth = -1;
+  private int skippedElements;
+
+  /**
+   * @param indent           spaces per level
+   * @param maxBytes         UTF-8 bytes written at most, {@link #UNLIMITED} for no limit
+   * @param maxArrayElements elements written per array at most, {@link #UNLIMITED} for no limit
+   */
+  JsonPrettyPrinter(int indent, long maxBytes, int maxArrayElements, @NonNull Output output) {
+    if (maxBytes <= 0 || maxArrayElements <= 0) {
+      throw new IllegalArgumentException("limits must be positive");
+    }
+    this.indent = indent;
+    this.maxBytes = maxBytes;
+    this.maxArrayElements = maxArrayElements;
+    this.output = Utils.checkNotNull(output);
+  }
+
+  /**
+   * Writes the indented json, then hands out the last chunk.
+   *
+   * @return null if the json is valid up to where the output ended, the reason otherwise
+   */
+  @Nullable
+  String print(@NonNull String json) {
+    String error = tokenize(Utils.checkNotNull(json));
+    // invalid json within the first chunk is not handed out at all
+    if (chunk.length() > 0 && (error == null || handedOut)) {
+      output.write(chunk.toString());
+    }
+    chunk.setLength(0);
+    return error;
+  }
+
+  @Nullable
+  private String tokenize(@NonNull String json) {
+    int expect = EXPECT_VALUE;
+    int length = json.length();
+    int i = 0;
+    while (i < length && !truncated) {
+      char c = json.charAt(i);
+      if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+        i++;
+        continue;
+      }
+      if (expect == EXPECT_END) {
+        return "unexpected '" + c + "' after the end at " + i;
+      }
+      switch (c) {
+        case '{':
+        case '[':
+          if (expect != EXPECT_VALUE && (expect != EXPECT_FIRST || containers[depth - 1] != ARRAY)) {
+            return unexpected(c, i);
+          }
+          if (expect == EXPECT_FIRST) {
+            newLine();
+          }
+          countElement();
+          write(c);
+          push(c == '{' ? OBJECT : ARRAY);
+          expect = EXPECT_FIRST;
+          i++;
+          break;
+        case '}':
+        case ']':
+          int type = c == '}' ? OBJECT : ARRAY;
+          if (depth == 0 || containers[depth - 1] != type
+              || (expect != EXPECT_COMMA_OR_CLOSE && expect != EXPECT_FIRST)) {
+            return unexpected(c, i);
+          }
+          close(c, expect == EXPECT_FIRST);
+          expect = depth == 0 ? EXPECT_END : EXPECT_COMMA_OR_CLOSE;
+          i++;
+          break;
+        case ',':
+          if (expect != EXPECT_COMMA_OR_CLOSE) {
+            return unexpected(c, i);
+          }
+          comma();
+          expect = containers[depth - 1] == OBJECT ? EXPECT_KEY : EXPECT_VALUE;
+          i++;
+          break;
+        case ':':
+          if (expect != EXPECT_COLON) {
+            return unexpected(c, i);
+          }
+          write(": ");
+          expect = EXPECT_VALUE;
+          i++;
+          break;
+        case '"':
+          boolean key = expect == EXPECT_KEY
+              || (expect == EXPECT_FIRST && containers[depth - 1] == OBJECT);
+          if (!key && expect != EXPECT_VALUE && expect != EXPECT_FIRST) {
+            return unexpected(c, i);
+          }
+          if (expect == EXPECT_FIRST) {
+            newLine();
+          }
+          int end = stringEnd(json, i);
+          if (end < 0) {
+            return "unterminated string at " + i;
+          }
+          if (!key) {
+            countElement();
+          }
+          write(json, i, end);
+          expect = key ? EXPECT_COLON : afterValue();
+          i = end;
+          break;
+        default:
+          if (expect != EXPECT_VALUE && (expect != EXPECT_FIRST || containers[depth - 1] != ARRAY)) {
+            return unexpected(c, i);
+          }
+          if (expect == EXPECT_FIRST) {
+            newLine();
+          }
+          int literalEnd = literalEnd(json, i);
+          if (!isLiteral(json, i, literalEnd)) {
+            return "invalid value '" + json.substring(i, Math.min(literalEnd, i + 20)) + "' at " + i;
+          }
+          countElement();
+          write(json, i, literalEnd);
+          expect = afterValue();
+          i = literalEnd;
+      }
+    }
+    if (truncated) {
+      return null;
+    }
+    if (depth > 0 || expect != EXPECT_END) {
+      return "unexpected end at " + length;
+    }
+    return null;
+  }
+
+  @NonNull
+  private static String unexpected(char c, int index) {
+    return "unexpected '" + c + "' at " + index;
+  }
+
+  private int afterValue() {
+    return depth == 0 ? EXPECT_END : EXPECT_COMMA_OR_CLOSE;
+  }
+
+  private void push(int type) {
+    if (depth == containers.length) {
+      containers = Arrays.copyOf(containers, depth * 2);
+      elementCounts = Arrays.copyOf(elementCounts, depth * 2);
+    }
+    containers[depth] = type;
+    elementCounts[depth] = 0;
+    depth++;
+  }
+
+  /**
+   * Counts a value starting inside an array
+   */
+  private void countElement() {
+    if (depth > 0 && containers[depth - 1] == ARRAY) {
+      elementCounts[depth - 1]++;
+    }
+  }
+
+  private void comma() {
+    if (skipDepth == depth && containers[depth - 1] == ARRAY) {
+      skippedElements++;
+      return;
+    }
+    if (skipDepth < 0 && containers[depth - 1] == ARRAY && elementCounts[depth - 1] >= maxArrayElements) {
+      // the remaining elements of this array are only validated
+      skipDepth = depth;
+      skippedElements = 1;
+      return;
+    }
+    write(',');
+    newLine();
+  }
+
+  private void close(char c, boolean empty) {
+    if (skipDepth == depth) {
+      skipDepth = -1;
+      newLine();
+      write("... " + skippedElements + " more");
+    }
+    depth--;
+    if (!empty) {
+      newLine();
+    }
+    write(c);
+  }
+
+  private void newLine() {
+    if (skipDepth >= 0) {
+      return;
+    }
+    write('\n');
+    for (int i = depth * indent; i > 0; i--) {
+      write(' ');
+    }
+    if (chunk.length() >= CHUNK_SIZE) {
+      // starts the next chunk with the indentation of the line
+      int lineStart = chunk.lastIndexOf("\n");
+      output.write(chunk.substring(0, lineStart));
+      chunk.delete(0, lineStart + 1);
+      handedOut = true;
+    }
+  }
+
+  private void write(char c) {
+    if (skipDepth >= 0 || truncated) {
+      return;
+    }
+    if (!count(c)) {
+      truncate();
+      return;
+    }
+    chunk.append(c);
+  }
+
+  private void write(@NonNull String text) {
+    write(text, 0, text.length());
+  }
+
+  private void write(@NonNull String text, int start, int end) {
+    if (skipDepth >= 0 || truncated) {
+      return;
+    }
+    for (int i = start; i < end; i++) {
+      if (!count(text.charAt(i))) {
+        // never ends with half of a surrogate pair
+        int cut = i > start && Character.isHighSurrogate(text.charAt(i - 1)) ? i - 1 : i;
+        chunk.append(text, start, cut);
+        truncate();
+        return;
+      }
+    }
+    chunk.append(text, start, end);
+  }
+
+  /**
+   * Adds the UTF-8 size of the char to the budget.
+   *
+   * @return false if the char does not fit anymore
+   */
+  private boolean count(char c) {
+    bytes += c < 0x80 ? 1 : (c < 0x800 || Character.isHighSurrogate(c) || Character.isLowSurrogate(c) ? 2 : 3);
+    return bytes <= maxBytes;
+  }
+
+  private void truncate() {
+    truncated = true;
+    chunk.append("\n... truncated after ").append(maxBytes).append(" bytes");
+  }
+
+  /**
+   * @return index after the closing quote, -1 if the string does not end
+   */
+  private static int stringEnd(@NonNull String json, int start) {
+    int length = json.length();
+    for (int i = start + 1; i < length; i++) {
+      char c = json.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (c == '"') {
+        return i + 1;
+      }
+    }
+    return -1;
+  }
+
+  private static int literalEnd(@NonNull String json, int start) {
+    int length = json.length();
+    int i = start;
+    while (i < length) {
+      char c = json.charAt(i);
+      if (c == ',' || c == '}' || c == ']' || c == ':' || c == '"'
+          || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+        break;
+      }
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * @return true for true, false, null and numbers as in RFC 8259
+   */
+  private static boolean isLiteral(@NonNull String json, int start, int end) {
+    if (json.startsWith("true", start) && end - start == 4
+        || json.startsWith("null", start) && end - start == 4
+        || json.startsWith("false", start) && end - start == 5) {
+      return true;
+    }
+    int i = start;
+    if (i < end && json.charAt(i) == '-') {
+      i++;
+    }
+    if (i < end && json.charAt(i) == '0') {
+      i++;
+    } else {
+      int digits = digits(json, i, end);
+      if (digits == 0) {
+        return false;
+      }
+      i += digits;
+    }
+    if (i < end && json.charAt(i) == '.') {
+      int digits = digits(json, i + 1, end);
+      if (digits == 0) {
+        return false;
+      }
+      i += 1 + digits;
+    }
+    if (i < end && (json.charAt(i) == 'e' || json.charAt(i) == 'E')) {
+      i++;
+      if (i < end && (json.charAt(i) == '+' || json.charAt(i) == '-')) {
+        i++;
+      }
+      int digits = digits(json, i, end);
+      if (digits == 0) {
+        return false;
+      }
+      i += digits;
+    }
+    return i == end;
+  }
+
+  private static int digits(@NonNull String json, int start, int end) {
+    int i = start;
+    while (i < end && json.charAt(i) >= '0' && json.charAt(i) <= '9') {
+      i++;
+    }
+    return i - start;
+  }
+}
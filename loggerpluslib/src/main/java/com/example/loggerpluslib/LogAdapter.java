@@ -12,7 +12,13 @@ import androidx.annotation.Nullable;
  * @see DiskLogAdapter
  */
 public abstract class LogAdapter {
-  
+
+  /**
+   * Logs handed to this adapter and logs it did not accept, see {@link LoggerMetrics}
+   */
+  final LoggerMetrics.Counters accepted = new LoggerMetrics.Counters();
+  final LoggerMetrics.Counters filtered = new LoggerMetrics.Counters();
+
 //  abstract void convertPriorityAndLog(int priority, @Nullable String tag, @NonNull String message);
 
   /**
@@ -24,6 +30,16 @@ public abstract class LogAdapter {
    */
   abstract void log(int priority, @Nullable String tag, @NonNull String message);
 
+  /**
+   * Logs a {@link LogEvent} with typed fields. By default the fields are appended to the message,
+   * adapters whose {@link FormatStrategy} renders them itself override this.
+   *
+   * @param fields only valid during this call
+   */
+  void log(int priority, @Nullable String tag, @NonNull String message, @NonNull LogFields fields) {
+    log(priority, tag, LogFields.render(message, fields));
+  }
+
 
   /**
    * Used to determine whether log should be printed out or not.
@@ -36,6 +52,34 @@ public abstract class LogAdapter {
    */
   abstract boolean isLoggable(int priority, @Nullable String tag);
 
+  /**
+   * Lowest priority {@link #isLoggable(int, String)} may ever accept. Logger drops anything below
+   * the minimum of all adapters before doing any work.
+   */
+  int minPriority() {
+    return Logger.VERBOSE;
+  }
+
+  /**
+   * Logs are dispatched on a background thread, so the caller's stack has to be captured up front
+   * if this adapter prints it.
+   *
+   * @return true if the caller's method stack is needed by {@link #log(int, String, String)}
+   */
+  boolean needsCallerStack() {
+    return false;
+  }
+
+  /**
+   * Called on the dispatcher thread whenever no log is pending, and by {@link Logger#flush()}.
+   * Adapters which hold logs back write them here.
+   *
+   * @param flushing true if called for a flush, everything held back should be written now
+   * @return nanoseconds until this has to be called again even if no log arrives, -1 if never
+   */
+  long onIdle(boolean flushing) {
+    return -1;
+  }
 
 
 }
\ No newline at end of file
@@ -0,0 +1,368 @@
+package com.example.loggerpluslib;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Lock-free multi-producer / single-consumer hand-off between the calling threads and the
+ * {@link LogAdapter}s.
+ *
+ * <p>Every log claims the next number of a global sequence, fills the matching slot of a ring
+ * buffer and publishes it. One consumer thread drains the slots strictly in sequence order, so
+ * the order of logs is kept without making callers wait on a shared monitor.</p>
+ *
+ * <p>Callers only block when the ring is full (back-pressure), never on each other. Should the
+ * consumer thread still die, callers stop waiting for it and log on their own thread.</p>
+ */
+final class LogDispatcher {
+
+  /**
+   * Receives the events on the consumer thread, in the order they were published.
+   */
+  interface Sink {
+    /**
+     * @param fields fields of a {@link LogEvent}, null if there are none, only valid during the call
+     */
+    void dispatch(int priority, @Nullable String tag, @Nullable String message, @Nullable Throwable throwable,
+                  @Nullable LogFields fields);
+
+    /**
+     * Called on the consumer thread when no event is pending, and by {@link #flush} once every
+     * event before it was dispatched.
+     *
+     * @param flushing true if called for a flush, anything held back should be written now
+     * @return nanoseconds until it has to be called again even if no event arrives, -1 if never
+     */
+    long idle(boolean flushing);
+  }
+
+  static final int DEFAULT_CAPACITY = 1024;
+
+  private static final int SPIN_TRIES = 100;
+  private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @NonNull
+  private final Sink sink;
+  private final int mask;
+  private final Event[] events;
+
+  /**
+   * Holds for every slot the sequence number of the event published in it, -1 when empty.
+   */
+  private final AtomicLongArray published;
+
+  /**
+   * Next sequence number to be claimed by a producer.
+   */
+  private final AtomicLong cursor = new AtomicLong();
+
+  /**
+   * Every sequence number below this one has been handed to the sink.
+   */
+  private final AtomicLong consumed = new AtomicLong();
+
+  private final AtomicBoolean started = new AtomicBoolean();
+
+  @NonNull
+  private final DispatchThread consumerThread;
+
+  private volatile boolean consumerWaiting;
+
+  /**
+   * Highest sequence number a {@link #flush} waits for, and the highest one the consumer has
+   * called {@link Sink#idle(boolean)} for afterwards
+   */
+  private final AtomicLong flushTarget = new AtomicLong();
+  private volatile long flushed;
+
+  /**
+   * Serializes callers which dispatch themselves, see {@link #dispatchWithoutConsumer}
+   */
+  private final Object fallbackLock = new Object();
+
+  LogDispatcher(@NonNull Sink sink) {
+    this(sink, DEFAULT_CAPACITY);
+  }
+
+  LogDispatcher(@NonNull Sink sink, int capacity) {
+    this.sink = Utils.checkNotNull(sink);
+    if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("capacity must be a power of two");
+    }
+    mask = capacity - 1;
+    events = new Event[capacity];
+    published = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      events[i] = new Event();
+      published.set(i, -1);
+    }
+    consumerThread = new DispatchThread(this);
+  }
+
+  /**
+   * Called from any thread. Returns as soon as the event is visible to the consumer.
+   *
+   * @param callerStack stack of the calling thread, only captured when an adapter prints it
+   * @param fields      copied into the slot, so the caller may reuse them right away
+   */
+  void publish(int priority,
+               @Nullable String tag,
+               @Nullable String message,
+               @Nullable Throwable throwable,
+               @Nullable StackTraceElement[] callerStack,
+               @Nullable LogFields fields) {
+    Thread current = Thread.currentThread();
+    if (current == consumerThread) {
+      // an adapter logs while being dispatched, waiting for a slot here would never end
+      dispatchInline(priority, tag, message, throwable, callerStack, fields);
+      return;
+    }
+    if (!started.get() && started.compareAndSet(false, true)) {
+      consumerThread.start();
+    }
+
+    long sequence = cursor.getAndIncrement();
+    while (sequence - events.length >= consumed.get()) {
+      if (consumerDied()) {
+        dispatchWithoutConsumer(priority, tag, message, throwable, fields);
+        return;
+      }
+      // ring is full, wait for the consumer to free our slot
+      LockSupport.unpark(consumerThread);
+      LockSupport.parkNanos(PARK_NANOS);
+    }
+
+    int index = (int) sequence & mask;
+    Event event = events[index];
+    event.priority = priority;
+    event.tag = tag;
+    event.message = message;
+    event.throwable = throwable;
+    event.thread = current;
+    event.stack = callerStack;
+    if (fields != null && !fields.isEmpty()) {
+      event.fields.copyFrom(fields);
+      event.hasFields = true;
+    }
+    published.set(index, sequence);
+
+    if (consumerWaiting) {
+      LockSupport.unpark(consumerThread);
+    }
+  }
+
+  /**
+   * Blocks until every event published before this call has been dispatched,
+   * or until the timeout elapses.
+   *
+   * @return true if everything was dispatched in time
+   */
+  boolean flush(long timeout, @NonNull TimeUnit unit) {
+    if (Thread.currentThread() == consumerThread || !started.get()) {
+      return true;
+    }
+    long target = cursor.get();
+    for (long current = flushTarget.get(); current < target; current = flushTarget.get()) {
+      if (flushTarget.compareAndSet(current, target)) {
+        break;
+      }
+    }
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (flushed < target) {
+      if (System.nanoTime() - deadline >= 0 || consumerDied()) {
+        return false;
+      }
+      LockSupport.unpark(consumerThread);
+      LockSupport.parkNanos(PARK_NANOS);
+    }
+    return true;
+  }
+
+  private void dispatchInline(int priority,
+                              @Nullable String tag,
+                              @Nullable String message,
+                              @Nullable Throwable throwable,
+                              @Nullable StackTraceElement[] callerStack,
+                              @Nullable LogFields fields) {
+    Thread origin = consumerThread.origin;
+    StackTraceElement[] stack = consumerThread.stack;
+    consumerThread.origin = consumerThread;
+    consumerThread.stack = callerStack;
+    try {
+      sink.dispatch(priority, tag, message, throwable, fields);
+    } finally {
+      consumerThread.origin = origin;
+      consumerThread.stack = stack;
+    }
+  }
+
+  /**
+   * Not the same as !isAlive(): the thread may not be started yet by the caller which started
+   * the dispatcher
+   */
+  private boolean consumerDied() {
+    return consumerThread.getState() == Thread.State.TERMINATED;
+  }
+
+  /**
+   * Last resort once the consumer thread is gone: the caller dispatches itself, one at a time.
+   * Logs still in the ring are lost.
+   */
+  private void dispatchWithoutConsumer(int priority,
+                                       @Nullable String tag,
+                                       @Nullable String message,
+                                       @Nullable Throwable throwable,
+                                       @Nullable LogFields fields) {
+    synchronized (fallbackLock) {
+      try {
+        sink.dispatch(priority, tag, message, throwable, fields);
+      } catch (Throwable e) {
+        LoggerMetrics.adapterError();
+      }
+    }
+  }
+
+  /**
+   * Consumer loop, only ever runs on {@link #consumerThread}.
+   */
+  private void drain() {
+    long sequence = consumed.get();
+    for (;;) {
+      int index = (int) sequence & mask;
+      awaitPublished(index, sequence);
+
+      Event event = events[index];
+      consumerThread.origin = event.thread;
+      consumerThread.stack = event.stack;
+      try {
+        sink.dispatch(event.priority, event.tag, event.message, event.throwable,
+            event.hasFields ? event.fields : null);
+      } catch (Throwable e) {
+        // a broken adapter must not kill the consumer, Errors like StackOverflowError included
+        LoggerMetrics.adapterError();
+      } finally {
+        consumerThread.origin = null;
+        consumerThread.stack = null;
+        event.clear();
+
+        // the slot is freed even if something escapes, so callers never wait for it forever
+        sequence++;
+        consumed.set(sequence);
+      }
+      serveFlush(sequence);
+    }
+  }
+
+  /**
+   * Lets the sink write what it holds back once every event a {@link #flush} waits for was
+   * dispatched.
+   */
+  private void serveFlush(long sequence) {
+    long target = flushTarget.get();
+    if (target > flushed && target <= sequence) {
+      idle(true);
+      flushed = target;
+    }
+  }
+
+  /**
+   * @return nanoseconds until the sink has to be called again, -1 if never
+   */
+  private long idle(boolean flushing) {
+    try {
+      return sink.idle(flushing);
+    } catch (Throwable e) {
+      LoggerMetrics.adapterError();
+      return -1;
+    }
+  }
+
+  private void awaitPublished(int index, long sequence) {
+    int tries = 0;
+    while (published.get(index) != sequence) {
+      if (tries < SPIN_TRIES) {
+        tries++;
+        Thread.yield();
+        continue;
+      }
+      serveFlush(sequence);
+      consumerWaiting = true;
+      if (published.get(index) != sequence) {
+        long idleNanos = idle(false);
+        if (published.get(index) != sequence && flushTarget.get() <= flushed) {
+          if (idleNanos < 0) {
+            LockSupport.park(this);
+          } else {
+            LockSupport.parkNanos(this, idleNanos);
+          }
+        }
+      }
+      consumerWaiting = false;
+    }
+  }
+
+  /**
+   * Mutable slot of the ring, reused for every lap.
+   */
+  private static final class Event {
+    int priority;
+    String tag;
+    String message;
+    Throwable throwable;
+    Thread thread;
+    StackTraceElement[] stack;
+    /**
+     * Reused by every event of this slot, grows to the largest event seen
+     */
+    final LogFields fields = new LogFields();
+    boolean hasFields;
+
+    void clear() {
+      tag = null;
+      message = null;
+      throwable = null;
+      thread = null;
+      stack = null;
+      if (hasFields) {
+        fields.clear();
+        hasFields = false;
+      }
+    }
+  }
+
+  /**
+   * The consumer thread. While an event is dispatched it exposes the thread which logged it,
+   * so that adapters can still print the caller's thread name and method stack.
+   *
+   * @see Utils#callerThread()
+   * @see Utils#callerStackTrace()
+   */
+  static final class DispatchThread extends Thread {
+
+    @NonNull
+    private final LogDispatcher dispatcher;
+
+    @Nullable
+    Thread origin;
+    @Nullable
+    StackTraceElement[] stack;
+
+    DispatchThread(@NonNull LogDispatcher dispatcher) {
+      super("LoggerDispatcher");
+      this.dispatcher = dispatcher;
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      dispatcher.drain();
+    }
+  }
+}
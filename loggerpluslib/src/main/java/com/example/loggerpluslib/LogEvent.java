@@ -0,0 +1,170 @@
+package com.example.loggerpluslib;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+
+/**
+ * A log with typed key-value fields, built without string concatenation.
+ *
+ * <pre><code>
+ *   Logger.event(Logger.INFO)
+ *       .message("request done")
+ *       .kv("uid", uid)
+ *       .kv("latency", latencyMillis)
+ *       .kv("path", path)
+ *       .log();
+ * </code></pre>
+ *
+ * <p>Events are reused per thread and must not be kept after {@link #log()}. For a level no adapter
+ * accepts, {@link Logger#event(int)} returns a shared event which ignores every call, so a filtered
+ * event allocates nothing. Fields are only rendered on the dispatcher thread: a
+ * {@link StructuredFormatStrategy} gets them typed, other strategies get them appended to the
+ * message as {@code key=value} pairs.</p>
+ */
+public final class LogEvent {
+
+  /**
+   * Handed out for levels no adapter accepts
+   */
+  static final LogEvent DISABLED = new LogEvent(false);
+
+  private static final ThreadLocal<LogEvent> local = new ThreadLocal<LogEvent>() {
+    @Override
+    protected LogEvent initialValue() {
+      return new LogEvent(true);
+    }
+  };
+
+  private final boolean enabled;
+
+  /**
+   * Set from {@link #obtain(int)} until {@link #log()}
+   */
+  private boolean inUse;
+
+  private int priority;
+  @Nullable
+  private String tag;
+  @Nullable
+  private String message;
+  @Nullable
+  private Throwable throwable;
+  @NonNull
+  final LogFields fields = new LogFields();
+
+  private LogEvent(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * @return the event of the calling thread, a new one if it is still being built, e.g. when
+   * computing a field logs another event
+   */
+  @NonNull
+  static LogEvent obtain(int priority) {
+    LogEvent event = local.get();
+    if (event.inUse) {
+      event = new LogEvent(true);
+    }
+    event.inUse = true;
+    event.priority = priority;
+    return event;
+  }
+
+  /**
+   * Custom tag, the tag is generated from the call site otherwise
+   */
+  @NonNull
+  public LogEvent tag(@Nullable String tag) {
+    if (enabled) {
+      this.tag = tag;
+    }
+    return this;
+  }
+
+  @NonNull
+  public LogEvent message(@Nullable String message) {
+    if (enabled) {
+      this.message = message;
+    }
+    return this;
+  }
+
+  @NonNull
+  public LogEvent throwable(@Nullable Throwable throwable) {
+    if (enabled) {
+      this.throwable = throwable;
+    }
+    return this;
+  }
+
+  @NonNull
+  public LogEvent kv(@NonNull String key, long value) {
+    if (enabled) {
+      fields.addLong(key, value);
+    }
+    return this;
+  }
+
+  @NonNull
+  public LogEvent kv(@NonNull String key, double value) {
+    if (enabled) {
+      fields.addDouble(key, value);
+    }
+    return this;
+  }
+
+  @NonNull
+  public LogEvent kv(@NonNull String key, boolean value) {
+    if (enabled) {
+      fields.addBoolean(key, value);
+    }
+    return this;
+  }
+
+  @NonNull
+  public LogEvent kv(@NonNull String key, @Nullable String value) {
+    if (enabled) {
+      fields.addString(key, value);
+    }
+    return this;
+  }
+
+  /**
+   * Hands the event to the adapters. The event is reset afterwards.
+   */
+  public void log() {
+    if (!enabled) {
+      return;
+    }
+    try {
+      Logger.logEvent(this);
+    } finally {
+      tag = null;
+      message = null;
+      throwable = null;
+      fields.clear();
+      inUse = false;
+    }
+  }
+
+  int priority() {
+    return priority;
+  }
+
+  @Nullable
+  String tag() {
+    return tag;
+  }
+
+  @Nullable
+  String message() {
+    return message;
+  }
+
+  @Nullable
+  Throwable throwable() {
+    return throwable;
+  }
+}
@@ -0,0 +1,228 @@
+package com.example.loggerpluslib;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+
+/**
+ * Typed key-value fields of a {@link LogEvent}, read by {@link StructuredFormatStrategy}.
+ *
+ * <p>Primitives are kept unboxed. Instances are reused: a {@link StructuredFormatStrategy} must
+ * not keep them after {@link StructuredFormatStrategy#log(int, String, String, LogFields)}
+ * returned.</p>
+ */
+public final class LogFields {
+
+  public static final int TYPE_LONG = 1;
+  public static final int TYPE_DOUBLE = 2;
+  public static final int TYPE_BOOLEAN = 3;
+  public static final int TYPE_STRING = 4;
+
+  private static final int INITIAL_CAPACITY = 8;
+
+  private int size;
+  @NonNull
+  private String[] keys = new String[INITIAL_CAPACITY];
+  @NonNull
+  private byte[] types = new byte[INITIAL_CAPACITY];
+  /**
+   * long values, double bits and booleans as 0/1
+   */
+  @NonNull
+  private long[] primitives = new long[INITIAL_CAPACITY];
+  @NonNull
+  private String[] strings = new String[INITIAL_CAPACITY];
+
+  LogFields() {
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @NonNull
+  public String key(int index) {
+    checkIndex(index);
+    return keys[index];
+  }
+
+  /**
+   * @return one of {@link #TYPE_LONG}, {@link #TYPE_DOUBLE}, {@link #TYPE_BOOLEAN}, {@link #TYPE_STRING}
+   */
+  public int type(int index) {
+    checkIndex(index);
+    return types[index];
+  }
+
+  public long longValue(int index) {
+    checkType(index, TYPE_LONG);
+    return primitives[index];
+  }
+
+  public double doubleValue(int index) {
+    checkType(index, TYPE_DOUBLE);
+    return Double.longBitsToDouble(primitives[index]);
+  }
+
+  public boolean booleanValue(int index) {
+    checkType(index, TYPE_BOOLEAN);
+    return primitives[index] != 0;
+  }
+
+  @Nullable
+  public String stringValue(int index) {
+    checkType(index, TYPE_STRING);
+    return strings[index];
+  }
+
+  /**
+   * Appends the fields as {@code key=value} pairs separated by spaces, e.g.
+   * {@code uid=42 path="/a b"}. Strings holding spaces, quotes or '=' are quoted.
+   */
+  @NonNull
+  public StringBuilder appendTo(@NonNull StringBuilder builder) {
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        builder.append(' ');
+      }
+      builder.append(keys[i]).append('=');
+      switch (types[i]) {
+        case TYPE_LONG:
+          builder.append(primitives[i]);
+          break;
+        case TYPE_DOUBLE:
+          builder.append(Double.longBitsToDouble(primitives[i]));
+          break;
+        case TYPE_BOOLEAN:
+          builder.append(primitives[i] != 0);
+          break;
+        default:
+          appendString(builder, strings[i]);
+      }
+    }
+    return builder;
+  }
+
+  @Override
+  public String toString() {
+    return appendTo(new StringBuilder()).toString();
+  }
+
+  /**
+   * @return the message followed by the fields, for strategies which do not render fields
+   */
+  @NonNull
+  static String render(@NonNull String message, @NonNull LogFields fields) {
+    if (fields.isEmpty()) {
+      return message;
+    }
+    StringBuilder builder = new StringBuilder(message.length() + 16 * fields.size()).append(message);
+    if (message.length() > 0) {
+      builder.append(' ');
+    }
+    return fields.appendTo(builder).toString();
+  }
+
+  private static void appendString(@NonNull StringBuilder builder, @Nullable String value) {
+    if (value == null) {
+      builder.append("null");
+      return;
+    }
+    boolean quote = value.isEmpty();
+    for (int i = 0; i < value.length() && !quote; i++) {
+      char c = value.charAt(i);
+      quote = c <= ' ' || c == '"' || c == '=';
+    }
+    if (!quote) {
+      builder.append(value);
+      return;
+    }
+    builder.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        builder.append('\\');
+      }
+      builder.append(c);
+    }
+    builder.append('"');
+  }
+
+  void addLong(@NonNull String key, long value) {
+    add(key, TYPE_LONG).primitives[size - 1] = value;
+  }
+
+  void addDouble(@NonNull String key, double value) {
+    add(key, TYPE_DOUBLE).primitives[size - 1] = Double.doubleToRawLongBits(value);
+  }
+
+  void addBoolean(@NonNull String key, boolean value) {
+    add(key, TYPE_BOOLEAN).primitives[size - 1] = value ? 1 : 0;
+  }
+
+  void addString(@NonNull String key, @Nullable String value) {
+    add(key, TYPE_STRING).strings[size - 1] = value;
+  }
+
+  @NonNull
+  private LogFields add(@NonNull String key, int type) {
+    Utils.checkNotNull(key);
+    if (size == keys.length) {
+      grow(size * 2);
+    }
+    keys[size] = key;
+    types[size] = (byte) type;
+    size++;
+    return this;
+  }
+
+  /**
+   * Copies the fields into this instance, growing it only when the other one is larger.
+   */
+  void copyFrom(@NonNull LogFields other) {
+    clear();
+    if (other.size > keys.length) {
+      grow(other.size);
+    }
+    System.arraycopy(other.keys, 0, keys, 0, other.size);
+    System.arraycopy(other.types, 0, types, 0, other.size);
+    System.arraycopy(other.primitives, 0, primitives, 0, other.size);
+    System.arraycopy(other.strings, 0, strings, 0, other.size);
+    size = other.size;
+  }
+
+  /**
+   * Drops the fields and the references to their keys and strings
+   */
+  void clear() {
+    Arrays.fill(keys, 0, size, null);
+    Arrays.fill(strings, 0, size, null);
+    size = 0;
+  }
+
+  private void grow(int capacity) {
+    keys = Arrays.copyOf(keys, capacity);
+    types = Arrays.copyOf(types, capacity);
+    primitives = Arrays.copyOf(primitives, capacity);
+    strings = Arrays.copyOf(strings, capacity);
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+    }
+  }
+
+  private void checkType(int index, int type) {
+    checkIndex(index);
+    if (types[index] != type) {
+      throw new IllegalStateException(keys[index] + " is not of type " + type);
+    }
+  }
+}
@@ -9,11 +9,17 @@ import android.util.Log;
  * LogCat implementation for {@link LogStrategy}
  *
  * This simply prints out all logs to Logcat by using standard {@link Log} class.
+ * Messages longer than a logcat entry are printed in several entries instead of being cut off.
  */
 public class LogcatLogStrategy implements LogStrategy {
 
   static final String DEFAULT_TAG = "NO_TAG";
 
+  /**
+   * Android's max limit for a log entry is ~4076 bytes
+   */
+  private static final int CHUNK_SIZE = 4000;
+
   @Override
   public void log(int priority, String tag, String message) {
     Utils.checkNotNull(message);
@@ -22,6 +28,16 @@ public class LogcatLogStrategy implements LogStrategy {
       tag = DEFAULT_TAG;
     }
 
-    Log.println(priority, tag, message);
+    if (!Utf8Chunker.mayExceed(message, CHUNK_SIZE)) {
+      Log.println(priority, tag, message);
+      return;
+    }
+    int length = message.length();
+    int start = 0;
+    while (start < length) {
+      int end = Utf8Chunker.chunkEnd(message, start, length, CHUNK_SIZE);
+      Log.println(priority, tag, message.substring(start, end));
+      start = Utf8Chunker.nextStart(message, end);
+    }
   }
 }
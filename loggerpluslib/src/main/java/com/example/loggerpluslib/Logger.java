@@ -38,6 +38,15 @@ import androidx.annotation.Nullable;
  *   Logger.d("hello %s", "world");
  * </code></pre>
  *
+ * <h3>Expensive messages can be built lazily</h3>
+ * The {@link MessageSupplier} is only called when an adapter accepts the log.
+ * Format arguments are likewise only applied to accepted logs.
+ *
+ * <h3>Structured logs with typed fields</h3>
+ * <pre><code>
+ *   Logger.event(Logger.INFO).message("request done").kv("uid", uid).kv("latency", ms).log();
+ * </code></pre>
+ *
  * <h3>Collections are support ed(only available for debug logs)</h3>
  * <pre><code>
  *   Logger.d(MAP);
@@ -75,25 +84,75 @@ public final class Logger {
   public static final int ASSERT = 7;
 
 
-  public static int layerNum;// Logger外所封装的层数，调用方法栈时需要用
+  /**
+   * Logger外所封装的层数，调用方法栈时需要用
+   *
+   * @deprecated not used anymore, register the wrapping classes with
+   * {@link #addWrapperClass(Class)} instead
+   */
+  @Deprecated
+  public static int layerNum;
 
   @NonNull
   private static Printer printer = new LoggerPrinter();
 
+  /**
+   * 所有Adapter可接收的最低级别，低于它的Log在入口处直接丢弃，不做任何处理。
+   * Recomputed whenever the adapters or the printer change.
+   */
+  private static volatile int minPriority = printer.minPriority();
+
   private Logger() {
     //no instance
   }
 
   public static void printer(@NonNull Printer printer) {
     Logger.printer = Utils.checkNotNull(printer);
+    minPriority = printer.minPriority();
   }
 
+  /**
+   * Adapters must be registered here rather than on the {@link Printer} directly,
+   * otherwise the minimum level is not updated.
+   */
   public static void addLogAdapter(@NonNull LogAdapter adapter) {
     printer.addAdapter(Utils.checkNotNull(adapter));
+    minPriority = printer.minPriority();
   }
 
   public static void clearLogAdapters() {
     printer.clearLogAdapters();
+    minPriority = printer.minPriority();
+  }
+
+  /**
+   * Called when an adapter changed its levels, see {@link AndroidLogAdapter#setTagLevels(TagLevels)}.
+   */
+  static void refreshMinPriority() {
+    minPriority = printer.minPriority();
+  }
+
+  /**
+   * Registers a class wrapping Logger, e.g. a LogUtil of the app. Its frames are skipped when
+   * looking up the caller for the auto-generated tag and the method stack.
+   */
+  public static void addWrapperClass(@NonNull Class<?> wrapper) {
+    Utils.addWrapperClass(Utils.checkNotNull(wrapper).getName());
+  }
+
+  /**
+   * @return true if at least one adapter may accept logs of the given priority
+   */
+  public static boolean isLoggable(int priority) {
+    return priority >= minPriority;
+  }
+
+  /**
+   * Logs are handed to the adapters on a background thread. Call this before the process
+   * may go away, e.g. when handling a crash, so that the last logs are not lost.
+   */
+  public static void flush() {
+    printer.flush();
   }
 
   /**
@@ -109,22 +168,37 @@ public final class Logger {
    * 有自定义Tag的
    */
   public static void v(@NonNull String tag, @Nullable String msg) {
+    if (VERBOSE < minPriority) {
+      return;
+    }
     printer.v(tag, msg);
   }
 
   public static void d(@NonNull String tag, @Nullable String msg) {
+    if (DEBUG < minPriority) {
+      return;
+    }
     printer.d(tag, msg);
   }
 
   public static void i(@NonNull String tag, @Nullable String msg) {
+    if (INFO < minPriority) {
+      return;
+    }
     printer.i(tag, msg);
   }
 
   public static void w(@NonNull String tag, @Nullable String msg) {
+    if (WARN < minPriority) {
+      return;
+    }
     printer.w(tag, msg);
   }
 
   public static void e(@NonNull String tag, @Nullable String msg) {
+    if (ERROR < minPriority) {
+      return;
+    }
     printer.e(tag, msg);
   }
 
@@ -133,57 +207,219 @@ public final class Logger {
    * 自动生成Tag的
    */
   public static void V(@NonNull String message, @Nullable Object... args) {
+    if (VERBOSE < minPriority) {
+      return;
+    }
     printer.v(message, args);
   }
 
   public static void D(@NonNull String message, @Nullable Object... args) {
+    if (DEBUG < minPriority) {
+      return;
+    }
     printer.d(message, args);
   }
 
   public static void I(@NonNull String message, @Nullable Object... args) {
+    if (INFO < minPriority) {
+      return;
+    }
     printer.i(message, args);
   }
 
   public static void W(@NonNull String message, @Nullable Object... args) {
+    if (WARN < minPriority) {
+      return;
+    }
     printer.w(message, args);
   }
 
   public static void E(@NonNull String message, @Nullable Object... args) {
+    if (ERROR < minPriority) {
+      return;
+    }
     printer.e(null, message, args);
   }
 
 
   public static void E(@Nullable Throwable throwable, @NonNull String message, @Nullable Object... args) {
+    if (ERROR < minPriority) {
+      return;
+    }
     printer.e(throwable, message, args);
   }
 
+  /**
+   * 延迟生成Log信息：只有在有Adapter接收该Log时才会调用supplier
+   */
+  public static void V(@NonNull MessageSupplier supplier) {
+    if (VERBOSE < minPriority) {
+      return;
+    }
+    printer.v(supplier);
+  }
+
+  public static void D(@NonNull MessageSupplier supplier) {
+    if (DEBUG < minPriority) {
+      return;
+    }
+    printer.d(supplier);
+  }
+
+  public static void I(@NonNull MessageSupplier supplier) {
+    if (INFO < minPriority) {
+      return;
+    }
+    printer.i(supplier);
+  }
+
+  public static void W(@NonNull MessageSupplier supplier) {
+    if (WARN < minPriority) {
+      return;
+    }
+    printer.w(supplier);
+  }
+
+  public static void E(@NonNull MessageSupplier supplier) {
+    if (ERROR < minPriority) {
+      return;
+    }
+    printer.e(supplier);
+  }
+
+  public static void v(@NonNull String tag, @NonNull MessageSupplier supplier) {
+    if (VERBOSE < minPriority) {
+      return;
+    }
+    printer.v(tag, supplier);
+  }
+
+  public static void d(@NonNull String tag, @NonNull MessageSupplier supplier) {
+    if (DEBUG < minPriority) {
+      return;
+    }
+    printer.d(tag, supplier);
+  }
+
+  public static void i(@NonNull String tag, @NonNull MessageSupplier supplier) {
+    if (INFO < minPriority) {
+      return;
+    }
+    printer.i(tag, supplier);
+  }
+
+  public static void w(@NonNull String tag, @NonNull MessageSupplier supplier) {
+    if (WARN < minPriority) {
+      return;
+    }
+    printer.w(tag, supplier);
+  }
+
+  public static void e(@NonNull String tag, @NonNull MessageSupplier supplier) {
+    if (ERROR < minPriority) {
+      return;
+    }
+    printer.e(tag, supplier);
+  }
+
   /**
    * General log function that accepts all configurations as parameter
    */
   public static void log(int priority, @Nullable String tag, @Nullable String message, @Nullable Throwable throwable) {
+    if (priority < minPriority) {
+      return;
+    }
     printer.log(priority, tag, message, throwable);
   }
 
 
+  /**
+   * Starts a structured log with typed fields, see {@link LogEvent}. Nothing is allocated if no
+   * adapter accepts the level.
+   */
+  @NonNull
+  public static LogEvent event(int priority) {
+    if (priority < minPriority) {
+      return LogEvent.DISABLED;
+    }
+    return LogEvent.obtain(priority);
+  }
+
+  static void logEvent(@NonNull LogEvent event) {
+    printer.log(event);
+  }
+
+
+  /**
+   * Entry points of the calls rewritten by the LoggerPlus Gradle plugin. The plugin replaces
+   * {@code V/D/I/W/E/wtf} calls of the app with these and appends the level and the
+   * {@code Class[method][line]} tag of the call site, so no method stack has to be walked.
+   * Not meant to be called by hand.
+   */
+  public static void injectedLog(@NonNull String message, @Nullable Object[] args,
+                                 int priority, @NonNull String callSiteTag) {
+    if (priority < minPriority) {
+      return;
+    }
+    printer.logAt(priority, callSiteTag, null, message, args);
+  }
+
+  public static void injectedLog(@Nullable Throwable throwable, @NonNull String message, @Nullable Object[] args,
+                                 int priority, @NonNull String callSiteTag) {
+    if (priority < minPriority) {
+      return;
+    }
+    printer.logAt(priority, callSiteTag, throwable, message, args);
+  }
+
+  public static void injectedLog(@NonNull MessageSupplier supplier, int priority, @NonNull String callSiteTag) {
+    if (priority < minPriority) {
+      return;
+    }
+    printer.logAt(priority, callSiteTag, supplier);
+  }
+
   /**
    * Tip: Use this for exceptional situations to log
    * ie: Unexpected errors etc
    */
   public static void wtf(@NonNull String message, @Nullable Object... args) {
+    if (ASSERT < minPriority) {
+      return;
+    }
     printer.wtf(message, args);
   }
 
   /**
-   * Formats the given json content and print it
+   * Formats the given json content and print it, see {@link Printer#json(String)} for invalid json
    */
   public static void json(@Nullable String json) {
+    // invalid json is logged as an ERROR
+    if (ERROR < minPriority) {
+      return;
+    }
     printer.json(json);
   }
 
+  /**
+   * Formats the given json content and print it, but at most {@code maxBytes} of it and at most
+   * {@code maxArrayElements} elements of each array. Meant for large payloads, e.g. API responses.
+   */
+  public static void json(@Nullable String json, long maxBytes, int maxArrayElements) {
+    if (ERROR < minPriority) {
+      return;
+    }
+    printer.json(json, maxBytes, maxArrayElements);
+  }
+
   /**
    * Formats the given xml content and print it
    */
   public static void xml(@Nullable String xml) {
+    // invalid xml is logged as an ERROR
+    if (ERROR < minPriority) {
+      return;
+    }
     printer.xml(xml);
   }
 
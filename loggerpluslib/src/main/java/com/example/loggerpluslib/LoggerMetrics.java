@@ -0,0 +1,486 @@
+package com.example.loggerpluslib;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Counters of the logging pipeline, collected all the time with plain atomics.
+ *
+ * <pre><code>
+ *   LoggerMetrics.Snapshot snapshot = LoggerMetrics.snapshot();
+ *   long dropped = snapshot.getDropped(Logger.DEBUG);
+ *   Log.i("Logger", snapshot.toString());
+ * </code></pre>
+ *
+ * <p>Taking a snapshot never blocks logging. Each value is read atomically, the snapshot as a whole
+ * is not, so counters updated meanwhile may be off by the logs in flight.</p>
+ *
+ * <p>Logs below the level of every adapter are dropped by {@link Logger} before anything is
+ * counted, so disabled logs stay free.</p>
+ */
+public final class LoggerMetrics {
+
+  private static final int LEVELS = Logger.ASSERT + 1;
+
+  /**
+   * Adapters currently registered with the default printer
+   */
+  private static final List<LogAdapter> adapters = new CopyOnWriteArrayList<>();
+
+  private static final Counters rejected = new Counters();
+  private static final Counters dropped = new Counters();
+  private static final Counters suppressed = new Counters();
+
+  private static final ConcurrentHashMap<String, Recorder> formatTimes = new ConcurrentHashMap<>();
+
+  private static final AtomicLong queueDepth = new AtomicLong();
+  private static final AtomicLong peakQueueDepth = new AtomicLong();
+  private static final Recorder writeLatency = new Recorder();
+
+  private static final AtomicLong bytesWritten = new AtomicLong();
+  private static final AtomicLong filesCreated = new AtomicLong();
+  private static final AtomicLong writeErrors = new AtomicLong();
+  private static final AtomicLong adapterErrors = new AtomicLong();
+  @Nullable
+  private static volatile String lastWriteError;
+
+  private LoggerMetrics() {
+    //no instance
+  }
+
+  @NonNull
+  public static Snapshot snapshot() {
+    return new Snapshot();
+  }
+
+  static void adapterAdded(@NonNull LogAdapter adapter) {
+    adapters.add(adapter);
+  }
+
+  static void adaptersCleared() {
+    adapters.clear();
+  }
+
+  /**
+   * A log no adapter accepted, counted on the calling thread
+   */
+  static void rejected(int priority) {
+    rejected.increment(priority);
+  }
+
+  /**
+   * A log a queue had no room for
+   */
+  static void dropped(int priority) {
+    dropped.increment(priority);
+  }
+
+  /**
+   * A log held back by {@link RateLimitedLogAdapter}
+   */
+  static void suppressed(int priority) {
+    suppressed.increment(priority);
+  }
+
+  @NonNull
+  static Recorder formatTimes(@NonNull FormatStrategy formatStrategy) {
+    String name = formatStrategy.getClass().getSimpleName();
+    Recorder recorder = formatTimes.get(name);
+    if (recorder == null) {
+      Recorder created = new Recorder();
+      recorder = formatTimes.putIfAbsent(name, created);
+      if (recorder == null) {
+        recorder = created;
+      }
+    }
+    return recorder;
+  }
+
+  /**
+   * @param delta logs added to (positive) or taken from (negative) a queue of {@link DiskLogStrategy}
+   */
+  static void queued(int delta) {
+    long depth = queueDepth.addAndGet(delta);
+    long peak;
+    while (depth > (peak = peakQueueDepth.get())) {
+      if (peakQueueDepth.compareAndSet(peak, depth)) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * @param nanos from enqueuing a log until it was flushed to the file
+   */
+  static void written(long nanos) {
+    writeLatency.record(nanos);
+  }
+
+  static void bytesWritten(long count) {
+    bytesWritten.addAndGet(count);
+  }
+
+  static void fileCreated() {
+    filesCreated.incrementAndGet();
+  }
+
+  static void writeError(@NonNull Exception e) {
+    writeErrors.incrementAndGet();
+    lastWriteError = e.toString();
+  }
+
+  /**
+   * An adapter threw while a log was dispatched
+   */
+  static void adapterError() {
+    adapterErrors.incrementAndGet();
+  }
+
+  /**
+   * Counts per level
+   */
+  static final class Counters {
+    private final AtomicLongArray counts = new AtomicLongArray(LEVELS);
+
+    void increment(int priority) {
+      counts.incrementAndGet(priority >= 0 && priority < LEVELS ? priority : 0);
+    }
+
+    @NonNull
+    long[] get() {
+      long[] values = new long[LEVELS];
+      for (int i = 0; i < LEVELS; i++) {
+        values[i] = counts.get(i);
+      }
+      return values;
+    }
+  }
+
+  /**
+   * Lock-free histogram of durations with power-of-two buckets: bucket i holds durations below
+   * 2^i ns, so percentiles are exact to a factor of two.
+   */
+  static final class Recorder {
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    void record(long nanos) {
+      if (nanos < 0) {
+        nanos = 0;
+      }
+      buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos)));
+      count.incrementAndGet();
+      totalNanos.addAndGet(nanos);
+      long max;
+      while (nanos > (max = maxNanos.get())) {
+        if (maxNanos.compareAndSet(max, nanos)) {
+          break;
+        }
+      }
+    }
+
+    @NonNull
+    Histogram snapshot() {
+      long[] values = new long[BUCKETS];
+      for (int i = 0; i < BUCKETS; i++) {
+        values[i] = buckets.get(i);
+      }
+      return new Histogram(values, count.get(), totalNanos.get(), maxNanos.get());
+    }
+  }
+
+  /**
+   * Durations in nanoseconds
+   */
+  public static final class Histogram {
+    private final long[] buckets;
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+
+    Histogram(@NonNull long[] buckets, long count, long totalNanos, long maxNanos) {
+      this.buckets = buckets;
+      this.count = count;
+      this.totalNanos = totalNanos;
+      this.maxNanos = maxNanos;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getTotalNanos() {
+      return totalNanos;
+    }
+
+    public long getMaxNanos() {
+      return maxNanos;
+    }
+
+    public long getMeanNanos() {
+      return count == 0 ? 0 : totalNanos / count;
+    }
+
+    /**
+     * @param percentile between 0 and 1, e.g. 0.99
+     * @return upper bound of the bucket holding the percentile, at most {@link #getMaxNanos()}
+     */
+    public long getPercentileNanos(double percentile) {
+      long total = 0;
+      for (long bucket : buckets) {
+        total += bucket;
+      }
+      if (total == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(percentile * total));
+      long seen = 0;
+      for (int i = 0; i < buckets.length; i++) {
+        seen += buckets[i];
+        if (seen >= rank) {
+          return i == 0 ? 0 : Math.min(maxNanos, (1L << i) - 1);
+        }
+      }
+      return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.US, "count=%d mean=%dus p50=%dus p99=%dus max=%dus", count,
+          getMeanNanos() / 1000, getPercentileNanos(0.5) / 1000, getPercentileNanos(0.99) / 1000,
+          maxNanos / 1000);
+    }
+  }
+
+  /**
+   * Logs one adapter was asked about, by level
+   */
+  public static final class AdapterStats {
+    @NonNull
+    private final LogAdapter adapter;
+    private final long[] accepted;
+    private final long[] filtered;
+
+    AdapterStats(@NonNull LogAdapter adapter) {
+      this.adapter = adapter;
+      this.accepted = adapter.accepted.get();
+      this.filtered = adapter.filtered.get();
+    }
+
+    @NonNull
+    public LogAdapter getAdapter() {
+      return adapter;
+    }
+
+    /**
+     * @return logs of the given level handed to the adapter
+     */
+    public long getAccepted(int priority) {
+      return level(accepted, priority);
+    }
+
+    /**
+     * @return logs of the given level the adapter did not accept, by level or by tag
+     */
+    public long getFiltered(int priority) {
+      return level(filtered, priority);
+    }
+
+    @Override
+    public String toString() {
+      return adapter.getClass().getSimpleName() + " accepted " + levels(accepted)
+          + ", filtered " + levels(filtered);
+    }
+  }
+
+  public static final class Snapshot {
+    private final long timeMillis = System.currentTimeMillis();
+    @NonNull
+    private final List<AdapterStats> adapterStats;
+    private final long[] rejectedLogs = rejected.get();
+    private final long[] droppedLogs = dropped.get();
+    private final long[] suppressedLogs = suppressed.get();
+    @NonNull
+    private final Map<String, Histogram> formatHistograms;
+    private final long depth = queueDepth.get();
+    private final long peakDepth = peakQueueDepth.get();
+    @NonNull
+    private final Histogram latency = writeLatency.snapshot();
+    private final long bytes = bytesWritten.get();
+    private final long files = filesCreated.get();
+    private final long errors = writeErrors.get();
+    @Nullable
+    private final String lastError = lastWriteError;
+    private final long dispatchErrors = adapterErrors.get();
+
+    Snapshot() {
+      List<AdapterStats> stats = new ArrayList<>();
+      for (LogAdapter adapter : adapters) {
+        stats.add(new AdapterStats(adapter));
+      }
+      adapterStats = Collections.unmodifiableList(stats);
+      Map<String, Histogram> histograms = new LinkedHashMap<>();
+      for (Map.Entry<String, Recorder> entry : formatTimes.entrySet()) {
+        histograms.put(entry.getKey(), entry.getValue().snapshot());
+      }
+      formatHistograms = Collections.unmodifiableMap(histograms);
+    }
+
+    public long getTimeMillis() {
+      return timeMillis;
+    }
+
+    /**
+     * @return the registered adapters in the order they were added
+     */
+    @NonNull
+    public List<AdapterStats> getAdapters() {
+      return adapterStats;
+    }
+
+    /**
+     * @return logs of the given level no adapter accepted, they were never formatted
+     */
+    public long getRejected(int priority) {
+      return level(rejectedLogs, priority);
+    }
+
+    /**
+     * @return logs of the given level a {@link DiskLogStrategy} had no room for
+     */
+    public long getDropped(int priority) {
+      return level(droppedLogs, priority);
+    }
+
+    /**
+     * @return logs of the given level held back by a {@link RateLimitedLogAdapter}
+     */
+    public long getSuppressed(int priority) {
+      return level(suppressedLogs, priority);
+    }
+
+    /**
+     * Time spent in {@link FormatStrategy#log(int, String, String)} on the dispatcher thread,
+     * including handing the log to its {@link LogStrategy}, by the simple class name of the strategy
+     */
+    @NonNull
+    public Map<String, Histogram> getFormatTimes() {
+      return formatHistograms;
+    }
+
+    /**
+     * @return logs waiting for the writers of all {@link DiskLogStrategy}s
+     */
+    public long getQueueDepth() {
+      return depth;
+    }
+
+    public long getPeakQueueDepth() {
+      return peakDepth;
+    }
+
+    /**
+     * Time from queueing a log in a {@link DiskLogStrategy} until it was flushed to the file.
+     * Logs spilled to disk are not included.
+     */
+    @NonNull
+    public Histogram getWriteLatency() {
+      return latency;
+    }
+
+    /**
+     * @return bytes written to log files, by {@link DiskLogStrategy}, {@link MmapLogStrategy} and
+     * {@link BinaryFormatStrategy}
+     */
+    public long getBytesWritten() {
+      return bytes;
+    }
+
+    /**
+     * @return log files created by those strategies
+     */
+    public long getFilesCreated() {
+      return files;
+    }
+
+    /**
+     * @return failed writes of those strategies, the logs of a failed write may be lost
+     */
+    public long getWriteErrors() {
+      return errors;
+    }
+
+    @Nullable
+    public String getLastWriteError() {
+      return lastError;
+    }
+
+    /**
+     * @return exceptions thrown by adapters, the log was lost for that adapter
+     */
+    public long getAdapterErrors() {
+      return dispatchErrors;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder builder = new StringBuilder("LoggerMetrics");
+      for (AdapterStats stats : adapterStats) {
+        builder.append("\n  ").append(stats);
+      }
+      builder.append("\n  rejected ").append(levels(rejectedLogs))
+          .append(", dropped ").append(levels(droppedLogs))
+          .append(", suppressed ").append(levels(suppressedLogs));
+      for (Map.Entry<String, Histogram> entry : formatHistograms.entrySet()) {
+        builder.append("\n  format ").append(entry.getKey()).append(": ").append(entry.getValue());
+      }
+      builder.append("\n  queue depth ").append(depth).append(" (peak ").append(peakDepth).append(')')
+          .append("\n  write latency: ").append(latency)
+          .append("\n  written ").append(bytes).append(" bytes, ").append(files).append(" files, ")
+          .append(errors).append(" errors");
+      if (lastError != null) {
+        builder.append(" (last: ").append(lastError).append(')');
+      }
+      builder.append(", adapter errors ").append(dispatchErrors);
+      return builder.toString();
+    }
+  }
+
+  private static long level(@NonNull long[] counts, int priority) {
+    return priority >= 0 && priority < counts.length ? counts[priority] : 0;
+  }
+
+  /**
+   * @return e.g. "{D 100, E 2}"
+   */
+  @NonNull
+  private static String levels(@NonNull long[] counts) {
+    StringBuilder builder = new StringBuilder("{");
+    for (int level = 0; level < counts.length; level++) {
+      if (counts[level] == 0) {
+        continue;
+      }
+      if (builder.length() > 1) {
+        builder.append(", ");
+      }
+      builder.append(Utils.logLevel(level)).append(' ').append(counts[level]);
+    }
+    return builder.append('}').toString();
+  }
+}
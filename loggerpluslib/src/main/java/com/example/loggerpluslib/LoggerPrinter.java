@@ -7,15 +7,13 @@ import android.text.TextUtils;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import androidx.annotation.VisibleForTesting;
 
 import java.io.StringReader;
 import java.io.StringWriter;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Source;
@@ -34,19 +32,31 @@ import javax.xml.transform.stream.StreamSource;
 //import static com.orhanobut.logger.Utils.checkNotNull;
 
 
-class LoggerPrinter implements Printer {
+class LoggerPrinter implements Printer, LogDispatcher.Sink {
 
   /**
    * It is used for json pretty print
    */
   private static final int JSON_INDENT = 2;
 
+  /**
+   * How long {@link #flush()} waits for pending logs at most
+   */
+  private static final long FLUSH_TIMEOUT_MILLIS = 3000;
+
   /**
    * Provides one-time used tag for the log message
    */
   private final ThreadLocal<String> localTag = new ThreadLocal<>();
 
-  private final List<LogAdapter> logAdapters = new ArrayList<>();
+  private final List<LogAdapter> logAdapters = new CopyOnWriteArrayList<>();
+
+  private final LogDispatcher dispatcher = new LogDispatcher(this);
+
+  /**
+   * Whether any adapter prints the caller's method stack, see {@link LogAdapter#needsCallerStack()}
+   */
+  private volatile boolean captureCallerStack;
 
   @Override
   public Printer t(String tag) {
@@ -59,11 +69,34 @@ class LoggerPrinter implements Printer {
   @Override
   public void addAdapter(@NonNull LogAdapter adapter) {
     logAdapters.add(Utils.checkNotNull(adapter));
+    LoggerMetrics.adapterAdded(adapter);
+    if (adapter.needsCallerStack()) {
+      captureCallerStack = true;
+    }
   }
 
   @Override
   public void clearLogAdapters() {
     logAdapters.clear();
+    LoggerMetrics.adaptersCleared();
+    captureCallerStack = false;
+  }
+
+  /**
+   * Computed on every call, adapters may change their levels at runtime
+   */
+  @Override
+  public int minPriority() {
+    int min = Integer.MAX_VALUE;
+    for (LogAdapter adapter : logAdapters) {
+      min = Math.min(min, adapter.minPriority());
+    }
+    return min;
+  }
+
+  @Override
+  public void flush() {
+    dispatcher.flush(FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
   }
 
 
@@ -117,6 +150,56 @@ class LoggerPrinter implements Printer {
   }
 
 
+  /**
+   * 延迟生成Log信息，自动生成Tag
+   */
+  @Override
+  public void v(@NonNull MessageSupplier supplier) {
+    log(Logger.VERBOSE, null, supplier);
+  }
+  @Override
+  public void d(@NonNull MessageSupplier supplier) {
+    log(Logger.DEBUG, null, supplier);
+  }
+  @Override
+  public void i(@NonNull MessageSupplier supplier) {
+    log(Logger.INFO, null, supplier);
+  }
+  @Override
+  public void w(@NonNull MessageSupplier supplier) {
+    log(Logger.WARN, null, supplier);
+  }
+  @Override
+  public void e(@NonNull MessageSupplier supplier) {
+    log(Logger.ERROR, null, supplier);
+  }
+
+
+  /**
+   * 自定义Tag + 延迟生成Log信息
+   */
+  @Override
+  public void v(@NonNull String customTag, @NonNull MessageSupplier supplier) {
+    log(Logger.VERBOSE, customTag, supplier);
+  }
+  @Override
+  public void d(@NonNull String customTag, @NonNull MessageSupplier supplier) {
+    log(Logger.DEBUG, customTag, supplier);
+  }
+  @Override
+  public void i(@NonNull String customTag, @NonNull MessageSupplier supplier) {
+    log(Logger.INFO, customTag, supplier);
+  }
+  @Override
+  public void w(@NonNull String customTag, @NonNull MessageSupplier supplier) {
+    log(Logger.WARN, customTag, supplier);
+  }
+  @Override
+  public void e(@NonNull String customTag, @NonNull MessageSupplier supplier) {
+    log(Logger.ERROR, customTag, supplier);
+  }
+
+
   @Override
   public void d(@Nullable Object object) {
     log(Logger.DEBUG, null,null, Utils.toString(object));
@@ -134,27 +217,44 @@ class LoggerPrinter implements Printer {
 
   @Override
   public void json(@Nullable String json) {
+    json(json, JsonPrettyPrinter.UNLIMITED, JsonPrettyPrinter.UNLIMITED);
+  }
+
+  /**
+   * Re-indented in a single pass and logged in chunks as it goes, see {@link JsonPrettyPrinter}
+   */
+  @Override
+  public void json(@Nullable String json, long maxBytes, int maxArrayElements) {
     if (Utils.isEmpty(json)) {
       d("Empty/Null json content");
       return;
     }
-    try {
-      json = json.trim();
-      if (json.startsWith("{")) {
-        JSONObject jsonObject = new JSONObject(json);
-        String message = jsonObject.toString(JSON_INDENT);
-        d(message);
-        return;
-      }
-      if (json.startsWith("[")) {
-        JSONArray jsonArray = new JSONArray(json);
-        String message = jsonArray.toString(JSON_INDENT);
-        d(message);
-        return;
-      }
-      e("Invalid Json");
-    } catch (JSONException e) {
+    int start = 0;
+    while (start < json.length() && Character.isWhitespace(json.charAt(start))) {
+      start++;
+    }
+    char first = start < json.length() ? json.charAt(start) : 0;
+    if (first != '{' && first != '[') {
       e("Invalid Json");
+      return;
+    }
+    final String tag = generateTag(null);
+    // invalid json is still reported when only the pretty output is filtered
+    final boolean pretty = isLoggable(Logger.DEBUG, tag);
+    if (!pretty && !isLoggable(Logger.ERROR, tag)) {
+      return;
+    }
+    JsonPrettyPrinter.Output output = new JsonPrettyPrinter.Output() {
+      @Override
+      public void write(@NonNull String chunk) {
+        if (pretty) {
+          log(Logger.DEBUG, tag, chunk, null);
+        }
+      }
+    };
+    String error = new JsonPrettyPrinter(JSON_INDENT, maxBytes, maxArrayElements, output).print(json);
+    if (error != null) {
+      e("Invalid Json, " + error);
     }
   }
 
@@ -178,27 +278,84 @@ class LoggerPrinter implements Printer {
   }
 
   /**
-   * This method is synchronized in order to avoid messy of logs' order.
+   * Tag and message are built on the calling thread, the order of logs is kept by {@link LogDispatcher}.
    */
-  private synchronized void log(int priority,
-                                @Nullable String customTag,
-                                @Nullable Throwable throwable,
-                                @NonNull String msg,
-                                @Nullable Object... args) {
+  private void log(int priority,
+                   @Nullable String customTag,
+                   @Nullable Throwable throwable,
+                   @NonNull String msg,
+                   @Nullable Object... args) {
     //
     String tag = generateTag(customTag);
     //
+    logTagged(priority, tag, throwable, msg, args);
+  }
+
+  private void log(int priority, @Nullable String customTag, @NonNull MessageSupplier supplier) {
+    Utils.checkNotNull(supplier);
+    logTagged(priority, generateTag(customTag), supplier);
+  }
+
+  /**
+   * 编译期已注入调用点Tag的Log，不再遍历方法栈
+   */
+  @Override
+  public void logAt(int priority,
+                    @NonNull String callSiteTag,
+                    @Nullable Throwable throwable,
+                    @NonNull String message,
+                    @Nullable Object... args) {
+    logTagged(priority, callSiteTag, throwable, message, args);
+  }
+
+  @Override
+  public void logAt(int priority, @NonNull String callSiteTag, @NonNull MessageSupplier supplier) {
+    Utils.checkNotNull(supplier);
+    logTagged(priority, callSiteTag, supplier);
+  }
+
+  private void logTagged(int priority,
+                         @Nullable String tag,
+                         @Nullable Throwable throwable,
+                         @NonNull String msg,
+                         @Nullable Object... args) {
+    // 没有Adapter接收时不做格式化
+    if (!isLoggable(priority, tag)) {
+      return;
+    }
+    //
     String message = createMessage(msg, args);
     //
     log(priority, tag, message, throwable);
   }
 
+  private void logTagged(int priority, @Nullable String tag, @NonNull MessageSupplier supplier) {
+    if (!isLoggable(priority, tag)) {
+      return;
+    }
+    log(priority, tag, supplier.get(), null);
+  }
+
+  /**
+   * @return true if at least one adapter accepts the log
+   */
+  private boolean isLoggable(int priority, @Nullable String tag) {
+    for (LogAdapter adapter : logAdapters) {
+      if (adapter.isLoggable(priority, tag)) {
+        return true;
+      }
+    }
+    LoggerMetrics.rejected(priority);
+    return false;
+  }
+
   private String generateTag(String customTag) {
     //
     if( !TextUtils.isEmpty(customTag) ){
       return "[" + customTag + "]";
     }
     //
+    // walks the stack, calls rewritten by the build plugin come with their tag instead
     StackTraceElement stackTraceElement = Utils.getStackTraceElement();
     return generateClassInfo(stackTraceElement) + generateMethodInfo(stackTraceElement);
   }
@@ -239,30 +396,90 @@ class LoggerPrinter implements Printer {
     return null;
   }
 
+  @VisibleForTesting
   @NonNull
-  private String createMessage(@NonNull String message, @Nullable Object... args) {
+  String createMessage(@NonNull String message, @Nullable Object... args) {
     return args == null || args.length == 0 ? message : String.format(message, args);
   }
 
   @Override
-  public synchronized void log(int priority,
-                               @Nullable String tag,
-                               @Nullable String message,
-                               @Nullable Throwable throwable) {
+  public void log(int priority,
+                  @Nullable String tag,
+                  @Nullable String message,
+                  @Nullable Throwable throwable) {
+    StackTraceElement[] callerStack = captureCallerStack ? Thread.currentThread().getStackTrace() : null;
+    dispatcher.publish(priority, tag, message, throwable, callerStack, null);
+  }
 
-    if(message == null){
+  /**
+   * The fields are copied by {@link LogDispatcher}, the event is reused as soon as this returns.
+   */
+  @Override
+  public void log(@NonNull LogEvent event) {
+    int priority = event.priority();
+    String tag = generateTag(event.tag());
+    if (!isLoggable(priority, tag)) {
+      return;
+    }
+    StackTraceElement[] callerStack = captureCallerStack ? Thread.currentThread().getStackTrace() : null;
+    dispatcher.publish(priority, tag, event.message(), event.throwable(), callerStack, event.fields);
+  }
+
+  /**
+   * Always called on the single consumer thread of {@link LogDispatcher}, in the order the logs were made.
+   */
+  @Override
+  public void dispatch(int priority,
+                       @Nullable String tag,
+                       @Nullable String message,
+                       @Nullable Throwable throwable,
+                       @Nullable LogFields fields) {
+    if (message == null && throwable == null && fields != null) {
+      // an event with fields only
+      message = "";
+    } else if(message == null){
       message = Utils.getStackTraceString(throwable);
     }else if(throwable != null){
       message = message + " : " + Utils.getStackTraceString(throwable);
     }
-    if (Utils.isEmpty(message)) {
+    if (Utils.isEmpty(message) && fields == null) {
       message = "Empty/NULL log message";
     }
 
     for (LogAdapter adapter : logAdapters) {
-      if (adapter.isLoggable(priority, tag)) {
-        adapter.log(priority, tag, message);
+      // a broken adapter must not cost the other adapters the log
+      try {
+        if (adapter.isLoggable(priority, tag)) {
+          adapter.accepted.increment(priority);
+          if (fields == null) {
+            adapter.log(priority, tag, message);
+          } else {
+            adapter.log(priority, tag, message, fields);
+          }
+        } else {
+          adapter.filtered.increment(priority);
+        }
+      } catch (Throwable e) {
+        LoggerMetrics.adapterError();
+      }
+    }
+  }
+
+  @Override
+  public long idle(boolean flushing) {
+    long next = -1;
+    for (LogAdapter adapter : logAdapters) {
+      long nanos;
+      try {
+        nanos = adapter.onIdle(flushing);
+      } catch (Throwable e) {
+        LoggerMetrics.adapterError();
+        continue;
+      }
+      if (nanos >= 0 && (next < 0 || nanos < next)) {
+        next = nanos;
       }
     }
+    return next;
   }
 }
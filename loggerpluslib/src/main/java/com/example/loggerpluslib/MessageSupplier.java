@@ -0,0 +1,27 @@
+package com.example.loggerpluslib;
+
+import androidx.annotation.Nullable;
+
+
+/**
+ * Builds a log message on demand.
+ *
+ * <p>The message is only built if at least one {@link LogAdapter} accepts the log, so expensive
+ * debug messages cost next to nothing when they are filtered out.</p>
+ *
+ * <pre><code>
+ *   Logger.D(new MessageSupplier() {
+ *     {@literal @}Override public String get() {
+ *       return "state: " + dumpState();
+ *     }
+ *   });
+ * </code></pre>
+ */
+public interface MessageSupplier {
+
+  /**
+   * Called on the logging thread, at most once per log call.
+   */
+  @Nullable
+  String get();
+}
@@ -0,0 +1,402 @@
+package com.example.loggerpluslib;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Crash-safe disk logging through a memory-mapped buffer.
+ *
+ * <p>Each log is copied into a file mapped with {@link FileChannel#map}, which the kernel keeps even
+ * if the process is killed. A background thread moves the buffered logs into the daily file of
+ * {@link DateFileStrategy}. Logs left in the buffer by a crash are moved on the next start.</p>
+ *
+ * <p>The buffer is a ring: appending a log only moves its end offset, moving logs into the file only
+ * moves its start offset. Each offset is a single int in the header, written after the bytes it
+ * covers, so the buffer file is consistent whenever the process dies.</p>
+ *
+ * <p>Logs are written at least once: a crash right after a move may repeat its last logs.</p>
+ *
+ * <pre><code>
+ *   FormatStrategy csvFormat = CsvFormatStrategy.newBuilder()
+ *       .logStrategy(new MmapLogStrategy(logDiskPath))
+ *       .build();
+ * </code></pre>
+ */
+public class MmapLogStrategy implements LogStrategy {
+
+  private static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+  /**
+   * Header of the buffer file: magic number, size of the ring, start and end offset of the
+   * buffered logs
+   */
+  private static final int MAGIC = 0x4C504D32;
+  private static final int CAPACITY_OFFSET = 4;
+  private static final int START_OFFSET = 8;
+  private static final int END_OFFSET = 12;
+  private static final int HEADER_SIZE = 16;
+
+  private static final String BUFFER_SUFFIX = ".buffer";
+
+  /**
+   * Buffered logs are moved at the latest after this delay
+   */
+  private static final long FLUSH_DELAY_MILLIS = 1000;
+
+  private static final Charset CHARSET = Charset.forName("UTF-8");
+
+  @NonNull
+  private final FileStrategy fileStrategy;
+
+  @NonNull
+  private final File bufferFile;
+
+  /**
+   * Size of the ring, one byte is always left free to tell a full ring from an empty one
+   */
+  private final int capacity;
+
+  /**
+   * Mapped buffer file, a heap buffer if mapping failed (then logs are not crash-safe). Mapped by
+   * the first log, guarded by this
+   */
+  private ByteBuffer buffer;
+
+  /**
+   * Offsets of the buffered logs in the ring, guarded by this
+   */
+  private int start;
+  private int end;
+
+  /**
+   * Encodes logs straight into the buffer, guarded by this
+   */
+  private final CharsetEncoder encoder = CHARSET.newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  @NonNull
+  private CharBuffer chars = CharBuffer.allocate(256);
+  /**
+   * Holds a character whose bytes are split by the end of the ring
+   */
+  private final ByteBuffer split = ByteBuffer.allocate(4);
+
+  /**
+   * Serializes moving the buffer into the log file
+   */
+  private final Object flushLock = new Object();
+
+  /**
+   * Views of the buffered logs before and after the end of the ring, guarded by flushLock
+   */
+  private ByteBuffer[] flushParts;
+
+  /**
+   * Started by the first log, so that creating the strategy costs nothing at app start
+   */
+  @Nullable
+  private volatile FlushHandler handler;
+
+  public MmapLogStrategy() {
+    this(null);
+  }
+
+  public MmapLogStrategy(@Nullable String logDiskPath) {
+    this(logDiskPath, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * @param bufferSize size of the mapped buffer file in bytes
+   */
+  public MmapLogStrategy(@Nullable String logDiskPath, int bufferSize) {
+    if (bufferSize <= HEADER_SIZE + 1) {
+      throw new IllegalArgumentException("bufferSize must be larger than " + (HEADER_SIZE + 1));
+    }
+    fileStrategy = new DateFileStrategy(logDiskPath);
+    String folderPath = logDiskPath != null ? logDiskPath : fileStrategy.generateDefaultPath();
+    // next to the log folder, so that clearing old log files leaves it alone
+    bufferFile = new File(folderPath + BUFFER_SUFFIX);
+    capacity = bufferSize - HEADER_SIZE;
+  }
+
+  @Override
+  public void log(int level, @Nullable String tag, @NonNull String message) {
+    Utils.checkNotNull(message);
+
+    FlushHandler h = handler();
+    int buffered = append(message);
+    if (buffered < 0) {
+      synchronized (flushLock) {
+        // writer is behind, make room on the calling thread
+        flush();
+        buffered = append(message);
+        if (buffered < 0) {
+          // larger than the whole buffer, written after the buffered logs to keep the order
+          writeToFile(new ByteBuffer[]{ByteBuffer.wrap(message.getBytes(CHARSET))});
+          return;
+        }
+      }
+    }
+    h.scheduleFlush(buffered >= capacity / 2);
+  }
+
+  /**
+   * Moves everything buffered so far into the current log file.
+   */
+  public void flush() {
+    if (handler == null) {
+      // nothing logged yet, logs left by a previous run are moved after the first log
+      return;
+    }
+    synchronized (flushLock) {
+      int from;
+      int to;
+      synchronized (this) {
+        from = start;
+        to = end;
+      }
+      if (from == to) {
+        return;
+      }
+      // appends only write outside of [from, to), so the bytes are read without the lock
+      ByteBuffer first = flushParts[0];
+      ByteBuffer second = flushParts[1];
+      first.limit(HEADER_SIZE + (to > from ? to : capacity));
+      first.position(HEADER_SIZE + from);
+      second.limit(HEADER_SIZE + (to > from ? 0 : to));
+      second.position(HEADER_SIZE);
+      if (!writeToFile(flushParts)) {
+        // keep them buffered, retried with the next flush
+        return;
+      }
+      synchronized (this) {
+        start = to;
+        buffer.putInt(START_OFFSET, to);
+      }
+    }
+  }
+
+  @NonNull
+  private FlushHandler handler() {
+    FlushHandler h = handler;
+    if (h == null) {
+      synchronized (this) {
+        h = handler;
+        if (h == null) {
+          buffer = map(bufferFile, HEADER_SIZE + capacity);
+          flushParts = new ByteBuffer[]{buffer.duplicate(), buffer.duplicate()};
+          boolean recovered = recover();
+
+          HandlerThread ht = new HandlerThread("AndroidMmapLogger");
+          ht.start();
+          h = new FlushHandler(ht.getLooper(), this);
+          handler = h;
+          if (recovered) {
+            h.scheduleFlush(true);
+          }
+        }
+      }
+    }
+    return h;
+  }
+
+  /**
+   * Encodes the log into the free part of the ring, which may wrap around its end.
+   *
+   * @return number of bytes buffered afterwards, -1 if the log does not fit
+   */
+  private synchronized int append(@NonNull String message) {
+    int length = message.length();
+    // every char takes at least one byte
+    if (length >= capacity) {
+      return -1;
+    }
+    if (chars.capacity() < length) {
+      chars = CharBuffer.allocate(Math.max(length, Math.min(2 * chars.capacity(), capacity)));
+    }
+    message.getChars(0, length, chars.array(), 0);
+    chars.clear();
+    chars.limit(length);
+    encoder.reset();
+
+    int free = capacity - 1 - buffered();
+    int beforeWrap = Math.min(free, capacity - end);
+    int written = encode(end, beforeWrap);
+    int newEnd = end + written;
+    if (chars.hasRemaining()) {
+      int gap = beforeWrap - written;
+      int afterWrap = free - beforeWrap;
+      newEnd = 0;
+      if (gap > 0) {
+        // the next character does not fit before the end of the ring, split its bytes
+        split.clear();
+        encoder.encode(chars, split, true);
+        split.flip();
+        if (split.remaining() - gap > afterWrap) {
+          return -1;
+        }
+        for (int i = 0; i < gap; i++) {
+          buffer.put(HEADER_SIZE + end + written + i, split.get());
+        }
+        while (split.hasRemaining()) {
+          buffer.put(HEADER_SIZE + newEnd++, split.get());
+        }
+      }
+      newEnd += encode(newEnd, afterWrap - newEnd);
+      if (chars.hasRemaining()) {
+        return -1;
+      }
+    }
+    // committed only after the bytes are in place, a crash before this drops the partial log
+    end = newEnd % capacity;
+    buffer.putInt(END_OFFSET, end);
+    return buffered();
+  }
+
+  /**
+   * @return number of bytes encoded into the ring at offset, at most count
+   */
+  private int encode(int offset, int count) {
+    buffer.limit(HEADER_SIZE + offset + count);
+    buffer.position(HEADER_SIZE + offset);
+    encoder.encode(chars, buffer, true);
+    int written = buffer.position() - HEADER_SIZE - offset;
+    buffer.clear();
+    return written;
+  }
+
+  private int buffered() {
+    return end >= start ? end - start : capacity - start + end;
+  }
+
+  /**
+   * Reads the header left by the previous process.
+   *
+   * @return true if logs of a previous run are still buffered
+   */
+  private boolean recover() {
+    int storedStart = buffer.getInt(START_OFFSET);
+    int storedEnd = buffer.getInt(END_OFFSET);
+    if (buffer.getInt(0) == MAGIC && buffer.getInt(CAPACITY_OFFSET) == capacity
+        && storedStart >= 0 && storedStart < capacity && storedEnd >= 0 && storedEnd < capacity) {
+      start = storedStart;
+      end = storedEnd;
+      return start != end;
+    }
+    // a new file, or one of another buffer size whose logs are dropped; the magic number last
+    buffer.putInt(START_OFFSET, 0);
+    buffer.putInt(END_OFFSET, 0);
+    buffer.putInt(CAPACITY_OFFSET, capacity);
+    buffer.putInt(0, MAGIC);
+    return false;
+  }
+
+  private boolean writeToFile(@NonNull ByteBuffer[] parts) {
+    FileOutputStream out = null;
+    try {
+      File logFile = fileStrategy.getCurrentFile();
+      boolean created = !logFile.exists();
+      out = new FileOutputStream(logFile, true);
+      if (created) {
+        LoggerMetrics.fileCreated();
+      }
+      long count = 0;
+      for (ByteBuffer part : parts) {
+        count += part.remaining();
+      }
+      FileChannel channel = out.getChannel();
+      for (long written = 0; written < count; ) {
+        written += channel.write(parts);
+      }
+      LoggerMetrics.bytesWritten(count);
+      return true;
+    } catch (IOException e) {
+      LoggerMetrics.writeError(e);
+      return false;
+    } finally {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException e1) { /* fail silently */ }
+      }
+    }
+  }
+
+  @NonNull
+  private static ByteBuffer map(@NonNull File file, int size) {
+    RandomAccessFile raf = null;
+    try {
+      File folder = file.getParentFile();
+      if (folder != null && !folder.exists()) {
+        folder.mkdirs();
+      }
+      raf = new RandomAccessFile(file, "rw");
+      raf.setLength(size);
+      // the mapping stays valid after the file is closed
+      return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    } catch (IOException e) {
+      return ByteBuffer.allocate(size);
+    } finally {
+      if (raf != null) {
+        try {
+          raf.close();
+        } catch (IOException e1) { /* fail silently */ }
+      }
+    }
+  }
+
+  static class FlushHandler extends Handler {
+
+    private static final int MSG_FLUSH = 1;
+
+    @NonNull
+    private final MmapLogStrategy strategy;
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicBoolean urgentFlushScheduled = new AtomicBoolean();
+
+    FlushHandler(@NonNull Looper looper, @NonNull MmapLogStrategy strategy) {
+      super(Utils.checkNotNull(looper));
+      this.strategy = strategy;
+    }
+
+    /**
+     * @param urgent true to move the buffer right away instead of after {@link #FLUSH_DELAY_MILLIS}
+     */
+    void scheduleFlush(boolean urgent) {
+      if (flushScheduled.compareAndSet(false, true)) {
+        sendEmptyMessageDelayed(MSG_FLUSH, urgent ? 0 : FLUSH_DELAY_MILLIS);
+      } else if (urgent && urgentFlushScheduled.compareAndSet(false, true)) {
+        sendEmptyMessage(MSG_FLUSH);
+      }
+    }
+
+    @Override
+    public void handleMessage(@NonNull Message msg) {
+      if (msg.what != MSG_FLUSH) {
+        return;
+      }
+      flushScheduled.set(false);
+      urgentFlushScheduled.set(false);
+      strategy.flush();
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package com.example.loggerpluslib;
+
+
+/**
+ * What a disk log queue does with a new log once it is full.
+ *
+ * @see DiskLogStrategy.Builder#overflowPolicy(OverflowPolicy)
+ */
+public enum OverflowPolicy {
+
+  /**
+   * Waits for the writer to make room, up to the block timeout. Drops the new log afterwards.
+   * With {@link Logger} the log waits in order behind the queue instead of the dispatcher thread,
+   * so other adapters keep going meanwhile.
+   */
+  BLOCK,
+
+  /**
+   * Drops the new log.
+   */
+  DROP_NEWEST,
+
+  /**
+   * Drops the oldest queued log to make room for the new one.
+   */
+  DROP_OLDEST,
+
+  /**
+   * Keeps {@link Logger#ERROR} and {@link Logger#ASSERT}: drops new logs below ERROR, and makes
+   * room for an ERROR by dropping the oldest queued log below ERROR.
+   */
+  DROP_BY_PRIORITY,
+
+  /**
+   * Loses nothing unless the disk fails: logs which do not fit are appended to an overflow file
+   * next to the log folder by a separate thread, and written to the log file in order once the
+   * writer has caught up. Logs waiting for that thread count against the limits of the queue,
+   * beyond them the thread which logs appends to the overflow file itself.
+   */
+  SPILL_TO_DISK
+}
@@ -35,6 +35,7 @@ import androidx.annotation.Nullable;
  *       .methodOffset(7)        // (Optional) Hides internal method calls up to offset. Default 5
  *       .logStrategy(customLog) // (Optional) Changes the log strategy to print out. Default LogCat
  *       .tag("My custom tag")   // (Optional) Global tag for every log. Default PRETTY_LOGGER
+ *       .singleWrite(true)      // (Optional) Prints the whole block at once. Default false
  *       .build();
  * </code></pre>
  */
@@ -64,6 +65,7 @@ public class PrettyFormatStrategy implements FormatStrategy {
   private final int methodCount;
   private final int methodOffset;
   private final boolean showThreadInfo;
+  private final boolean singleWrite;
   @NonNull
   private final LogStrategy logStrategy;
   @Nullable
@@ -75,6 +77,7 @@ public class PrettyFormatStrategy implements FormatStrategy {
     methodCount = builder.methodCount;
     methodOffset = builder.methodOffset;
     showThreadInfo = builder.showThreadInfo;
+    singleWrite = builder.singleWrite;
     logStrategy = builder.logStrategy;
     tag = builder.tag;
   }
@@ -91,31 +94,99 @@ public class PrettyFormatStrategy implements FormatStrategy {
 //    String tag = formatTag(onceOnlyTag);
     String tag = onceOnlyTag;
 
+    if (singleWrite) {
+      logBlock(priority, tag, message);
+      return;
+    }
+
     logTopBorder(priority, tag);
     logHeaderContent(priority, tag, methodCount);
 
-    //get bytes of message with system's default charset (which is UTF-8 for Android)
-    byte[] bytes = message.getBytes();
-    int length = bytes.length;
-    if (length <= CHUNK_SIZE) {
-      if (methodCount > 0) {
-        logDivider(priority, tag);
-      }
-      logContent(priority, tag, message);
-      logBottomBorder(priority, tag);
-      return;
-    }
     if (methodCount > 0) {
       logDivider(priority, tag);
     }
-    for (int i = 0; i < length; i += CHUNK_SIZE) {
-      int count = Math.min(length - i, CHUNK_SIZE);
-      //create a new String with system's default charset (which is UTF-8 for Android)
-      logContent(priority, tag, new String(bytes, i, count));
+    // cut by UTF-8 bytes while scanning the chars, on whole characters and lines if possible
+    int length = message.length();
+    if (!Utf8Chunker.mayExceed(message, CHUNK_SIZE)) {
+      logContent(priority, tag, message);
+    } else {
+      int start = 0;
+      while (start < length) {
+        int end = Utf8Chunker.chunkEnd(message, start, length, CHUNK_SIZE);
+        logContent(priority, tag, message.substring(start, end));
+        start = Utf8Chunker.nextStart(message, end);
+      }
     }
     logBottomBorder(priority, tag);
   }
 
+  /**
+   * Builds the whole bordered block in the reused buffer of the calling thread and prints it with
+   * as few calls as the chunk size allows, so other logs can not end up inside the block.
+   */
+  private void logBlock(int priority, @Nullable String tag, @NonNull String message) {
+    Block block = BLOCKS.get();
+    block.begin(logStrategy, priority, tag);
+
+    block.addLine(TOP_BORDER);
+    if (showThreadInfo) {
+      block.line().append(HORIZONTAL_LINE).append(" Thread: ").append(Utils.callerThread().getName());
+      block.endLine();
+      block.addLine(MIDDLE_BORDER);
+    }
+    if (methodCount > 0) {
+      StackTraceElement[] trace = Utils.callerStackTrace();
+      int stackUpIndex = Utils.getStackIndex(trace);
+      int stackDownIndex = stackUpIndex + methodCount - 1;
+      int depth = 0;
+      for (int i = stackDownIndex; i >= stackUpIndex; i--) {
+        if (i >= trace.length || i < 0) {
+          continue;
+        }
+        StackTraceElement element = trace[i];
+        StringBuilder line = block.line().append(HORIZONTAL_LINE).append(' ');
+        for (int d = 0; d < depth; d++) {
+          line.append("   ");
+        }
+        String className = element.getClassName();
+        line.append(className, className.lastIndexOf('.') + 1, className.length())
+            .append('.')
+            .append(element.getMethodName())
+            .append("  (")
+            .append(element.getFileName())
+            .append(':')
+            .append(element.getLineNumber())
+            .append(')');
+        block.endLine();
+        depth++;
+      }
+      block.addLine(MIDDLE_BORDER);
+    }
+
+    // 逐字符查找换行，不用正则
+    int length = message.length();
+    int start = 0;
+    while (start < length) {
+      int end = message.indexOf('\n', start);
+      if (end < 0) {
+        end = length;
+      }
+      int lineEnd = end > start && message.charAt(end - 1) == '\r' ? end - 1 : end;
+      block.addContent(HORIZONTAL_LINE, message, start, lineEnd);
+      start = end + 1;
+    }
+    if (length == 0) {
+      block.addContent(HORIZONTAL_LINE, message, 0, 0);
+    }
+
+    block.addLine(BOTTOM_BORDER);
+    block.end();
+  }
+
+  boolean showsMethodStack() {
+    return methodCount > 0;
+  }
+
   private void logTopBorder(int logType, @Nullable String tag) {
     logChunk(logType, tag, TOP_BORDER);
   }
@@ -124,7 +195,7 @@ public class PrettyFormatStrategy implements FormatStrategy {
   private void logHeaderContent(int logType, @Nullable String tag, int methodCount) {
     //打印线程信息
     if (showThreadInfo) {
-      logChunk(logType, tag, HORIZONTAL_LINE + " Thread: " + Thread.currentThread().getName());
+      logChunk(logType, tag, HORIZONTAL_LINE + " Thread: " + Utils.callerThread().getName());
       logDivider(logType, tag);
     }
     //打印方法栈
@@ -137,7 +208,7 @@ public class PrettyFormatStrategy implements FormatStrategy {
    * 打印从stackDownIndex到stackUpIndex的方法栈
    */
   private void printMethodStack(int logType, String tag) {
-    StackTraceElement[] trace = Thread.currentThread().getStackTrace();
+    StackTraceElement[] trace = Utils.callerStackTrace();
     int stackUpIndex = Utils.getStackIndex(trace);
     int stackDownIndex = stackUpIndex + methodCount - 1;
     String level = "";
@@ -194,6 +265,104 @@ public class PrettyFormatStrategy implements FormatStrategy {
     return name.substring(lastIndex + 1);
   }
 
+  private static final ThreadLocal<Block> BLOCKS = new ThreadLocal<Block>() {
+    @Override
+    protected Block initialValue() {
+      return new Block();
+    }
+  };
+
+  /**
+   * Reused buffer of one bordered block. Lines are collected until the next one would make the
+   * text longer than {@link #CHUNK_SIZE} bytes, then the text is printed with a single call.
+   */
+  private static final class Block {
+
+    /**
+     * A buffer grown beyond this by a huge log is not kept
+     */
+    private static final int MAX_RETAINED_CAPACITY = 4 * CHUNK_SIZE;
+
+    private StringBuilder text = new StringBuilder(CHUNK_SIZE);
+    private int textBytes;
+    private final StringBuilder line = new StringBuilder(256);
+
+    private LogStrategy logStrategy;
+    private int priority;
+    private String tag;
+
+    void begin(@NonNull LogStrategy logStrategy, int priority, @Nullable String tag) {
+      this.logStrategy = logStrategy;
+      this.priority = priority;
+      this.tag = tag;
+      text.setLength(0);
+      textBytes = 0;
+    }
+
+    /**
+     * @return the empty buffer of the next line, added by {@link #endLine()}
+     */
+    @NonNull
+    StringBuilder line() {
+      line.setLength(0);
+      return line;
+    }
+
+    void endLine() {
+      addLine(line);
+    }
+
+    void addLine(@NonNull CharSequence value) {
+      append(value, 0, value.length(), Utils.utf8Length(value, 0, value.length()));
+    }
+
+    /**
+     * Adds a message line after the prefix, split into several lines if it is longer than a chunk.
+     */
+    void addContent(char prefix, @NonNull String message, int start, int end) {
+      // prefix and space
+      int prefixBytes = Utils.utf8Length(String.valueOf(prefix), 0, 1) + 1;
+      int budget = CHUNK_SIZE - prefixBytes;
+      do {
+        int split = Utf8Chunker.chunkEnd(message, start, end, budget);
+        line().append(prefix).append(' ').append(message, start, split);
+        append(line, 0, line.length(), prefixBytes + Utils.utf8Length(message, start, split));
+        start = split;
+      } while (start < end);
+    }
+
+    private void append(@NonNull CharSequence value, int start, int end, int bytes) {
+      // one more byte for the line break
+      if (textBytes > 0 && textBytes + 1 + bytes > CHUNK_SIZE) {
+        print();
+      }
+      if (textBytes > 0) {
+        text.append('\n');
+        textBytes++;
+      }
+      text.append(value, start, end);
+      textBytes += bytes;
+    }
+
+    void end() {
+      print();
+      logStrategy = null;
+      tag = null;
+      if (text.capacity() > MAX_RETAINED_CAPACITY) {
+        text = new StringBuilder(CHUNK_SIZE);
+      }
+    }
+
+    private void print() {
+      if (text.length() == 0) {
+        return;
+      }
+      logStrategy.log(priority, tag, text.toString());
+      text.setLength(0);
+      textBytes = 0;
+    }
+  }
+
   @Nullable
   private String formatTag(@Nullable String tag) {
     if (!Utils.isEmpty(tag) && !Utils.equals(this.tag, tag)) {
@@ -206,6 +375,7 @@ public class PrettyFormatStrategy implements FormatStrategy {
     int methodCount = 0;
     int methodOffset = 0;
     boolean showThreadInfo = true;
+    boolean singleWrite = false;
     @Nullable
     LogStrategy logStrategy;
     @Nullable
@@ -232,6 +402,16 @@ public class PrettyFormatStrategy implements FormatStrategy {
       return this;
     }
 
+    /**
+     * Whether to print the borders, header and message of a log as one block, with as few
+     * calls to the {@link LogStrategy} as the logcat size limit allows.
+     */
+    @NonNull
+    public Builder singleWrite(boolean val) {
+      singleWrite = val;
+      return this;
+    }
+
     @NonNull
     public Builder logStrategy(@Nullable LogStrategy val) {
       logStrategy = val;
@@ -15,6 +15,16 @@ public interface Printer {
 
   void clearLogAdapters();
 
+  /**
+   * Lowest priority any of the adapters may accept, {@link Integer#MAX_VALUE} if there is none
+   */
+  int minPriority();
+
+  /**
+   * Blocks until the logs made so far have been handed to the adapters
+   */
+  void flush();
+
 
   //兼容自带tag的
   void v(@NonNull String tag, @Nullable String msg);
@@ -39,6 +49,27 @@ public interface Printer {
 
   void e(@NonNull String message, @Nullable Object... args);
 
+  //只在有Adapter接收时才生成Log信息
+  void v(@NonNull MessageSupplier supplier);
+
+  void d(@NonNull MessageSupplier supplier);
+
+  void i(@NonNull MessageSupplier supplier);
+
+  void w(@NonNull MessageSupplier supplier);
+
+  void e(@NonNull MessageSupplier supplier);
+
+  void v(@NonNull String tag, @NonNull MessageSupplier supplier);
+
+  void d(@NonNull String tag, @NonNull MessageSupplier supplier);
+
+  void i(@NonNull String tag, @NonNull MessageSupplier supplier);
+
+  void w(@NonNull String tag, @NonNull MessageSupplier supplier);
+
+  void e(@NonNull String tag, @NonNull MessageSupplier supplier);
+
   //
   void d(@Nullable Object object);
 
@@ -47,15 +78,36 @@ public interface Printer {
   void wtf(@NonNull String message, @Nullable Object... args);
 
   /**
-   * Formats the given json content and print it
+   * Formats the given json content and print it at DEBUG, invalid json is logged as an ERROR.
+   * Json of up to about 3000 chars is validated before anything is printed. Larger json is
+   * printed in chunks while it is validated, so the chunks before an error are already printed.
    */
   void json(@Nullable String json);
 
   /**
-   * Formats the given xml content and print it
+   * Same as {@link #json(String)}, the output stops after {@code maxBytes} and each array after
+   * {@code maxArrayElements} elements
+   */
+  void json(@Nullable String json, long maxBytes, int maxArrayElements);
+
+  /**
+   * Formats the given xml content and print it at DEBUG, invalid xml is logged as an ERROR.
    */
   void xml(@Nullable String xml);
 
   void log(int priority, @Nullable String tag, @Nullable String message, @Nullable Throwable throwable);
 
+  /**
+   * Same as the auto-tagged methods, but with a call site tag resolved at build time
+   */
+  void logAt(int priority, @NonNull String callSiteTag, @Nullable Throwable throwable,
+             @NonNull String message, @Nullable Object... args);
+
+  void logAt(int priority, @NonNull String callSiteTag, @NonNull MessageSupplier supplier);
+
+  /**
+   * Logs a structured event, see {@link Logger#event(int)}
+   */
+  void log(@NonNull LogEvent event);
+
 }
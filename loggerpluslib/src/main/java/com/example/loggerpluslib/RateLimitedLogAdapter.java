@@ -0,0 +1,291 @@
+package com.example.loggerpluslib;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Wraps a {@link LogAdapter} and limits how many logs per second each tag may pass to it, so a
+ * tight loop can not flood logcat or the disk writer.
+ *
+ * <p>Every tag (generated tags name the call site) has a token bucket per level: up to
+ * {@code burst} logs pass at once, then {@code perSecond} logs per second. Logs beyond that are
+ * counted and reported every summary interval as one line "suppressed N lines from TAG", also when
+ * the flood stopped and by {@link Logger#flush()}. ERROR and ASSERT are not limited by default.</p>
+ *
+ * <p>The buckets are lock-free: a bucket is a single atomic time stamp, the earliest time its next
+ * log would pass if it was empty (generic cell rate algorithm).</p>
+ *
+ * <pre><code>
+ *   Logger.addLogAdapter(RateLimitedLogAdapter.newBuilder()
+ *       .adapter(new DiskLogAdapter())
+ *       .limit(Logger.DEBUG, 50, 10)                // (Optional) Default burst 100, 50 per second
+ *       .summaryInterval(30, TimeUnit.SECONDS)      // (Optional) Default 10 seconds
+ *       .build());
+ * </code></pre>
+ */
+public class RateLimitedLogAdapter extends LogAdapter {
+
+  private static final int LEVELS = Logger.ASSERT + 1;
+
+  /**
+   * Tags tracked at most, e.g. with tags holding ids. All buckets are reset beyond it.
+   */
+  private static final int MAX_TAGS = 4096;
+
+  @NonNull
+  private final LogAdapter adapter;
+
+  /**
+   * Per level: nanoseconds between two logs, and how far a bucket may be ahead (burst), 0 if
+   * the level is not limited
+   */
+  private final long[] intervalNanos = new long[LEVELS];
+  private final long[] burstNanos = new long[LEVELS];
+
+  private final long summaryIntervalNanos;
+
+  private final ConcurrentHashMap<String, TagState> tags = new ConcurrentHashMap<>();
+
+  private final AtomicLong nextSummaryNanos;
+
+  /**
+   * Whether logs were suppressed since the last report
+   */
+  private volatile boolean reportPending;
+
+  private RateLimitedLogAdapter(@NonNull Builder builder) {
+    adapter = builder.adapter;
+    for (int level = 0; level < LEVELS; level++) {
+      double perSecond = builder.perSecond[level];
+      if (perSecond > 0) {
+        intervalNanos[level] = (long) (TimeUnit.SECONDS.toNanos(1) / perSecond);
+        burstNanos[level] = intervalNanos[level] * Math.max(builder.burst[level] - 1, 0);
+      }
+    }
+    summaryIntervalNanos = builder.summaryIntervalNanos;
+    nextSummaryNanos = new AtomicLong(System.nanoTime() + summaryIntervalNanos);
+  }
+
+  @NonNull
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  @Override
+  public boolean isLoggable(int priority, @Nullable String tag) {
+    return adapter.isLoggable(priority, tag);
+  }
+
+  @Override
+  int minPriority() {
+    return adapter.minPriority();
+  }
+
+  @Override
+  boolean needsCallerStack() {
+    return adapter.needsCallerStack();
+  }
+
+  @Override
+  public void log(int priority, @Nullable String tag, @NonNull String message) {
+    long now = System.nanoTime();
+    if (tryAcquire(priority, tag, now)) {
+      adapter.log(priority, tag, message);
+    }
+    reportIfDue(now);
+  }
+
+  @Override
+  void log(int priority, @Nullable String tag, @NonNull String message, @NonNull LogFields fields) {
+    long now = System.nanoTime();
+    if (tryAcquire(priority, tag, now)) {
+      adapter.log(priority, tag, message, fields);
+    }
+    reportIfDue(now);
+  }
+
+  /**
+   * Reports a flood which stopped once the summary interval is over, no later log is needed.
+   */
+  @Override
+  long onIdle(boolean flushing) {
+    long now = System.nanoTime();
+    if (flushing) {
+      nextSummaryNanos.set(now + summaryIntervalNanos);
+      reportAll();
+    } else {
+      reportIfDue(now);
+    }
+    long next = adapter.onIdle(flushing);
+    if (reportPending) {
+      long untilSummary = Math.max(nextSummaryNanos.get() - now, 0);
+      next = next < 0 ? untilSummary : Math.min(next, untilSummary);
+    }
+    return next;
+  }
+
+  /**
+   * @return false if the log is suppressed
+   */
+  private boolean tryAcquire(int priority, @Nullable String tag, long now) {
+    int level = priority >= 0 && priority < LEVELS ? priority : 0;
+    if (intervalNanos[level] == 0) {
+      return true;
+    }
+    TagState state = state(tag);
+    if (state.tryAcquire(level, now, intervalNanos[level], burstNanos[level])) {
+      return true;
+    }
+    state.suppressed.incrementAndGet();
+    reportPending = true;
+    LoggerMetrics.suppressed(priority);
+    return false;
+  }
+
+  private void reportIfDue(long now) {
+    long next = nextSummaryNanos.get();
+    if (now - next >= 0 && nextSummaryNanos.compareAndSet(next, now + summaryIntervalNanos)) {
+      reportAll();
+    }
+  }
+
+  @NonNull
+  private TagState state(@Nullable String tag) {
+    String key = tag != null ? tag : "";
+    TagState state = tags.get(key);
+    if (state == null) {
+      if (tags.size() >= MAX_TAGS) {
+        reportAll();
+        tags.clear();
+      }
+      TagState created = new TagState();
+      state = tags.putIfAbsent(key, created);
+      if (state == null) {
+        state = created;
+      }
+    }
+    return state;
+  }
+
+  private void reportAll() {
+    reportPending = false;
+    for (Map.Entry<String, TagState> entry : tags.entrySet()) {
+      String key = entry.getKey();
+      report(key.isEmpty() ? null : key, entry.getValue());
+    }
+  }
+
+  private void report(@Nullable String tag, @NonNull TagState state) {
+    if (state.suppressed.get() == 0) {
+      return;
+    }
+    long count = state.suppressed.getAndSet(0);
+    if (count > 0 && adapter.isLoggable(Logger.WARN, tag)) {
+      adapter.log(Logger.WARN, tag, "suppressed " + count + " lines from " + tag);
+    }
+  }
+
+  private static final class TagState {
+
+    /**
+     * Per level the earliest time the bucket is full again, see the class comment
+     */
+    final AtomicLongArray theoreticalArrival = new AtomicLongArray(LEVELS);
+    final AtomicLong suppressed = new AtomicLong();
+
+    TagState() {
+      long now = System.nanoTime();
+      for (int level = 0; level < LEVELS; level++) {
+        theoreticalArrival.set(level, now);
+      }
+    }
+
+    boolean tryAcquire(int level, long now, long interval, long burst) {
+      for (;;) {
+        long arrival = theoreticalArrival.get(level);
+        long start = arrival - now > 0 ? arrival : now;
+        if (start - now > burst) {
+          return false;
+        }
+        if (theoreticalArrival.compareAndSet(level, arrival, start + interval)) {
+          return true;
+        }
+      }
+    }
+  }
+
+  public static final class Builder {
+
+    LogAdapter adapter;
+    final int[] burst = new int[LEVELS];
+    final double[] perSecond = new double[LEVELS];
+    long summaryIntervalNanos = TimeUnit.SECONDS.toNanos(10);
+
+    private Builder() {
+      for (int level = 0; level < Logger.ERROR; level++) {
+        burst[level] = 100;
+        perSecond[level] = 50;
+      }
+    }
+
+    /**
+     * The adapter which receives the logs that pass
+     */
+    @NonNull
+    public Builder adapter(@NonNull LogAdapter val) {
+      adapter = Utils.checkNotNull(val);
+      return this;
+    }
+
+    /**
+     * @param burst     logs of one tag which may pass at once
+     * @param perSecond logs of one tag which may pass per second afterwards
+     */
+    @NonNull
+    public Builder limit(int priority, int burst, double perSecond) {
+      if (burst <= 0 || perSecond <= 0) {
+        throw new IllegalArgumentException("burst and perSecond must be positive");
+      }
+      this.burst[checkLevel(priority)] = burst;
+      this.perSecond[priority] = perSecond;
+      return this;
+    }
+
+    @NonNull
+    public Builder unlimited(int priority) {
+      burst[checkLevel(priority)] = 0;
+      perSecond[priority] = 0;
+      return this;
+    }
+
+    /**
+     * How often suppressed logs are reported, a flood which stopped is reported at the end of its
+     * interval
+     */
+    @NonNull
+    public Builder summaryInterval(long duration, @NonNull TimeUnit unit) {
+      summaryIntervalNanos = unit.toNanos(duration);
+      return this;
+    }
+
+    @NonNull
+    public RateLimitedLogAdapter build() {
+      Utils.checkNotNull(adapter);
+      return new RateLimitedLogAdapter(this);
+    }
+
+    private static int checkLevel(int priority) {
+      if (priority < Logger.VERBOSE || priority > Logger.ASSERT) {
+        throw new IllegalArgumentException("Unknown priority " + priority);
+      }
+      return priority;
+    }
+  }
+}
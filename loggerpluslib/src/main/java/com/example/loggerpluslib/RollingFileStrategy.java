@@ -0,0 +1,471 @@
+package com.example.loggerpluslib;
+
+import android.os.Environment;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rolls log files by day and by size, and keeps the folder within a byte budget, a file count
+ * and a maximum age.
+ *
+ * <p>Files are named {@code yyyy-MM-dd_N.csv}, N counting the segments of a day. The known files
+ * are kept in a small manifest inside the folder, so retention is enforced from memory as files
+ * roll instead of listing and parsing the folder every time. The folder is listed again when the
+ * manifest names a file which is gone.</p>
+ *
+ * <p>The size of the current file is counted from the bytes {@link DiskLogStrategy} and
+ * {@link BinaryFormatStrategy} write, other writers make it ask the file system.</p>
+ *
+ * <pre><code>
+ *   FileStrategy fileStrategy = RollingFileStrategy.newBuilder()
+ *       .folderPath(logDiskPath)
+ *       .maxFileSize(4 * 1024 * 1024)     // (Optional) Default 8 MB
+ *       .maxTotalSize(64 * 1024 * 1024)   // (Optional) Default 64 MB
+ *       .maxFileCount(30)                 // (Optional) Default 50
+ *       .maxAge(7, TimeUnit.DAYS)         // (Optional) Default 7 days
+ *       .build();
+ * </code></pre>
+ */
+public class RollingFileStrategy implements FileStrategy {
+
+    private static final String PATTERN = "yyyy-MM-dd";
+    private static final char INDEX_SEPARATOR = '_';
+    private static final String MANIFEST_NAME = ".manifest";
+    private static final String FIELD_SEPARATOR = "\t";
+
+    private final String folderPath;
+    private final String suffix;
+    private final long maxFileSize;
+    private final long maxTotalSize;
+    private final int maxFileCount;
+    private final long maxAgeMillis;
+
+    //除当前文件外的日志文件，按时间从旧到新
+    private final LinkedList<Entry> closedFiles = new LinkedList<>();
+    private long closedBytes;
+    private boolean loaded;
+
+    private Entry current;
+    private long currentDayEndMillis;
+
+    //写入的字节数由CountingOutputStream报告后，当前文件大小只在内存中累加
+    private boolean sizeReported;
+
+    private RollingFileStrategy(@NonNull Builder builder) {
+        folderPath = builder.folderPath != null ? builder.folderPath : generateDefaultPath();
+        suffix = builder.suffix;
+        maxFileSize = builder.maxFileSize;
+        maxTotalSize = builder.maxTotalSize;
+        maxFileCount = builder.maxFileCount;
+        maxAgeMillis = builder.maxAgeMillis;
+    }
+
+    @NonNull
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    @Override
+    public synchronized void clearOldFiles() {
+        ensureLoaded();
+        enforceRetention(System.currentTimeMillis());
+    }
+
+    @Override
+    public String generateDefaultPath() {
+        String diskPath = Environment.getExternalStorageDirectory().getAbsolutePath();
+        return diskPath + File.separatorChar + "logger";
+    }
+
+    @Override
+    public synchronized File getCurrentFile() {
+        ensureLoaded();
+        long now = System.currentTimeMillis();
+        if (current == null || now >= currentDayEndMillis) {
+            openForDay(now);
+        } else {
+            if (!sizeReported) {
+                current.size = current.file(folderPath, suffix).length();
+            }
+            if (current.size >= maxFileSize) {
+                roll(current.day, current.index + 1, now);
+            }
+        }
+        enforceRetention(now);
+        return current.file(folderPath, suffix);
+    }
+
+    /**
+     * Called by {@link CountingOutputStream} with the bytes written to a log file.
+     */
+    synchronized void written(@NonNull File file, long count) {
+        if (current != null && file.equals(current.file(folderPath, suffix))) {
+            current.size += count;
+            sizeReported = true;
+        }
+    }
+
+    private void openForDay(long now) {
+        String day = new SimpleDateFormat(PATTERN, Locale.getDefault()).format(new Date(now));
+        currentDayEndMillis = nextDayStartMillis(now);
+
+        Entry last = current == null ? closedFiles.peekLast() : null;
+        if (last != null && last.day.equals(day)) {
+            // first file after a restart, continue the newest one if it has room left
+            File lastFile = last.file(folderPath, suffix);
+            if (lastFile.exists() && lastFile.length() < maxFileSize) {
+                closedFiles.removeLast();
+                closedBytes -= last.size;
+                last.size = lastFile.length();
+                current = last;
+            } else {
+                roll(day, last.index + 1, now);
+            }
+            return;
+        }
+        roll(day, 0, now);
+    }
+
+    /**
+     * Closes the current file and starts segment {@code index} of the given day.
+     */
+    private void roll(@NonNull String day, int index, long now) {
+        if (current != null) {
+            if (!sizeReported) {
+                current.size = current.file(folderPath, suffix).length();
+            }
+            current.modified = now;
+            closedFiles.addLast(current);
+            closedBytes += current.size;
+        }
+        File folder = new File(folderPath);
+        if (!folder.exists()) {
+            folder.mkdirs();
+        }
+        current = new Entry(day, index, 0, now);
+        saveManifest();
+    }
+
+    /**
+     * Deletes the oldest files until every limit is met. Uses the manifest, the folder is only
+     * listed again if a file in it was already gone.
+     */
+    private void enforceRetention(long now) {
+        long currentSize = current != null ? current.size : 0;
+        int currentCount = current != null ? 1 : 0;
+        boolean changed = false;
+        boolean missing = false;
+        while (!closedFiles.isEmpty()) {
+            Entry oldest = closedFiles.getFirst();
+            boolean tooMany = closedFiles.size() + currentCount > maxFileCount;
+            boolean tooLarge = closedBytes + currentSize > maxTotalSize;
+            boolean tooOld = now - oldest.modified > maxAgeMillis;
+            if (!tooMany && !tooLarge && !tooOld) {
+                break;
+            }
+            closedFiles.removeFirst();
+            closedBytes -= oldest.size;
+            File file = oldest.file(folderPath, suffix);
+            if (!file.delete() && !file.exists()) {
+                missing = true;
+            }
+            changed = true;
+        }
+        if (missing) {
+            // deleted by someone else, the manifest no longer matches the folder
+            rebuildManifest();
+            enforceRetention(now);
+        } else if (changed) {
+            saveManifest();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!loadManifest() || !manifestFilesExist()) {
+            rebuildManifest();
+        }
+    }
+
+    /**
+     * Once per process, the files may have been deleted while the app was not running.
+     */
+    private boolean manifestFilesExist() {
+        for (Entry entry : closedFiles) {
+            if (!entry.file(folderPath, suffix).exists()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return false if there is no usable manifest
+     */
+    private boolean loadManifest() {
+        File manifest = new File(folderPath, MANIFEST_NAME);
+        if (!manifest.exists()) {
+            return false;
+        }
+        List<Entry> entries = new ArrayList<>();
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Entry entry = Entry.parse(line);
+                if (entry == null) {
+                    return false;
+                }
+                entries.add(entry);
+            }
+        } catch (IOException e) {
+            return false;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e1) { /* fail silently */ }
+            }
+        }
+        for (Entry entry : entries) {
+            closedFiles.addLast(entry);
+            closedBytes += entry.size;
+        }
+        return true;
+    }
+
+    /**
+     * Lists the folder, when the manifest is missing, broken or names a file which is gone.
+     */
+    private void rebuildManifest() {
+        closedFiles.clear();
+        closedBytes = 0;
+        File[] files = new File(folderPath).listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        for (File file : files) {
+            Entry entry = Entry.fromFileName(file.getName(), suffix);
+            if (entry == null || entry.isSameFile(current)) {
+                continue;
+            }
+            entry.size = file.length();
+            entry.modified = file.lastModified();
+            closedFiles.addLast(entry);
+            closedBytes += entry.size;
+        }
+        saveManifest();
+    }
+
+    private void saveManifest() {
+        File folder = new File(folderPath);
+        if (!folder.exists()) {
+            return;
+        }
+        File manifest = new File(folder, MANIFEST_NAME);
+        File temp = new File(folder, MANIFEST_NAME + ".tmp");
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(temp), "UTF-8");
+            for (Entry entry : closedFiles) {
+                writer.write(entry.format());
+            }
+            if (current != null) {
+                writer.write(current.format());
+            }
+            writer.close();
+            writer = null;
+            if (!temp.renameTo(manifest)) {
+                manifest.delete();
+                temp.renameTo(manifest);
+            }
+        } catch (IOException e) {
+            // the folder is listed again next time
+            temp.delete();
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e1) { /* fail silently */ }
+            }
+        }
+    }
+
+    private static long nextDayStartMillis(long now) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(now);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * One log file in the manifest
+     */
+    private static final class Entry {
+        final String day;
+        final int index;
+        long size;
+        long modified;
+        private File file;
+
+        Entry(String day, int index, long size, long modified) {
+            this.day = day;
+            this.index = index;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        File file(String folder, String suffix) {
+            if (file == null) {
+                file = new File(folder, day + INDEX_SEPARATOR + index + suffix);
+            }
+            return file;
+        }
+
+        boolean isSameFile(@Nullable Entry other) {
+            return other != null && day.equals(other.day) && index == other.index;
+        }
+
+        String format() {
+            return day + FIELD_SEPARATOR + index + FIELD_SEPARATOR + size + FIELD_SEPARATOR + modified + "\n";
+        }
+
+        /**
+         * @return null if the manifest line is broken
+         */
+        @Nullable
+        static Entry parse(String line) {
+            String[] fields = line.split(FIELD_SEPARATOR);
+            if (fields.length != 4) {
+                return null;
+            }
+            try {
+                return new Entry(fields[0], Integer.parseInt(fields[1]),
+                        Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        /**
+         * @return null if the file was not written by this strategy
+         */
+        @Nullable
+        static Entry fromFileName(String name, String suffix) {
+            if (!name.endsWith(suffix)) {
+                return null;
+            }
+            String base = name.substring(0, name.length() - suffix.length());
+            int separator = base.lastIndexOf(INDEX_SEPARATOR);
+            if (separator != PATTERN.length()) {
+                return null;
+            }
+            try {
+                return new Entry(base.substring(0, separator), Integer.parseInt(base.substring(separator + 1)), 0, 0);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    public static final class Builder {
+
+        String folderPath;
+        String suffix = ".csv";
+        long maxFileSize = 8 * 1024 * 1024;
+        long maxTotalSize = 64 * 1024 * 1024;
+        int maxFileCount = 50;
+        long maxAgeMillis = TimeUnit.DAYS.toMillis(7);
+
+        private Builder() {
+        }
+
+        @NonNull
+        public Builder folderPath(@Nullable String val) {
+            folderPath = val;
+            return this;
+        }
+
+        /**
+         * File name suffix, e.g. ".csv"
+         */
+        @NonNull
+        public Builder suffix(@NonNull String val) {
+            suffix = Utils.checkNotNull(val);
+            return this;
+        }
+
+        /**
+         * A new segment is started once the current file reaches this size
+         */
+        @NonNull
+        public Builder maxFileSize(long bytes) {
+            maxFileSize = bytes;
+            return this;
+        }
+
+        /**
+         * Oldest files are deleted while all files together are larger than this
+         */
+        @NonNull
+        public Builder maxTotalSize(long bytes) {
+            maxTotalSize = bytes;
+            return this;
+        }
+
+        @NonNull
+        public Builder maxFileCount(int val) {
+            maxFileCount = val;
+            return this;
+        }
+
+        @NonNull
+        public Builder maxAge(long duration, @NonNull TimeUnit unit) {
+            maxAgeMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        @NonNull
+        public RollingFileStrategy build() {
+            if (maxFileSize <= 0 || maxTotalSize <= 0 || maxFileCount <= 0 || maxAgeMillis <= 0) {
+                throw new IllegalArgumentException("limits must be positive");
+            }
+            return new RollingFileStrategy(this);
+        }
+    }
+}
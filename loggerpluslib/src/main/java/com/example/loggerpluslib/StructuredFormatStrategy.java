@@ -0,0 +1,18 @@
+package com.example.loggerpluslib;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+
+/**
+ * A {@link FormatStrategy} which renders the typed fields of a {@link LogEvent} itself. Other
+ * strategies get the fields appended to the message as {@code key=value} pairs.
+ */
+public interface StructuredFormatStrategy extends FormatStrategy {
+
+  /**
+   * @param fields never empty, only valid during this call
+   */
+  void log(int priority, @Nullable String tag, @NonNull String message, @NonNull LogFields fields);
+
+}
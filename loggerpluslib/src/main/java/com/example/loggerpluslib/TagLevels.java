@@ -0,0 +1,232 @@
+package com.example.loggerpluslib;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Immutable table of minimum log levels per tag and per tag prefix, used by {@link LogAdapter}s
+ * to filter logs before they are formatted.
+ *
+ * <p>Exact tags are looked up in a hash map, prefixes in a trie where the longest prefix wins.
+ * The result for each tag is cached, so a repeated tag costs one hash lookup. Being immutable, a
+ * table can be swapped on an adapter at any time.</p>
+ *
+ * <p>Tags are matched by name: a custom tag without its brackets ("[Net]" is "Net"), and the
+ * class name for generated tags ("NetClient[send][42]" is "NetClient").</p>
+ *
+ * <pre><code>
+ *   TagLevels diskLevels = TagLevels.newBuilder()
+ *       .defaultLevel(Logger.DEBUG)      // (Optional) Default VERBOSE
+ *       .tag("Player", Logger.INFO)      // exactly this tag
+ *       .tagPrefix("Net", Logger.WARN)   // every tag starting with Net
+ *       .build();
+ *   Logger.addLogAdapter(new DiskLogAdapter(csvFormat, diskLevels));
+ * </code></pre>
+ */
+public final class TagLevels {
+
+  /**
+   * Cached results beyond this are not kept, e.g. with tags holding ids
+   */
+  private static final int MAX_CACHED_TAGS = 1024;
+
+  private final int defaultLevel;
+  private final int lowestLevel;
+  @NonNull
+  private final Map<String, Integer> tags;
+  @NonNull
+  private final Node prefixes;
+
+  private final ConcurrentHashMap<String, Integer> resolved = new ConcurrentHashMap<>();
+
+  private TagLevels(@NonNull Builder builder) {
+    defaultLevel = builder.defaultLevel;
+    tags = new HashMap<>(builder.tags);
+    prefixes = Node.build(builder.prefixes, builder.prefixLevels);
+    int lowest = defaultLevel;
+    for (Integer level : builder.tags.values()) {
+      lowest = Math.min(lowest, level);
+    }
+    for (Integer level : builder.prefixLevels) {
+      lowest = Math.min(lowest, level);
+    }
+    lowestLevel = lowest;
+  }
+
+  /**
+   * @return a table with the same level for every tag
+   */
+  @NonNull
+  public static TagLevels of(int level) {
+    return newBuilder().defaultLevel(level).build();
+  }
+
+  @NonNull
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * @return the minimum level of logs with this tag
+   */
+  public int minPriority(@Nullable String tag) {
+    if (tag == null || (tags.isEmpty() && prefixes.isEmpty())) {
+      return defaultLevel;
+    }
+    Integer level = resolved.get(tag);
+    if (level != null) {
+      return level;
+    }
+    String name = tagName(tag);
+    level = tags.get(name);
+    if (level == null) {
+      level = prefixes.longestMatch(name, defaultLevel);
+    }
+    if (resolved.size() < MAX_CACHED_TAGS) {
+      resolved.put(tag, level);
+    }
+    return level;
+  }
+
+  /**
+   * @return the name part of a tag made by {@link LoggerPrinter}
+   */
+  @NonNull
+  private static String tagName(@NonNull String tag) {
+    if (tag.startsWith("[")) {
+      int end = tag.indexOf(']');
+      return end > 0 ? tag.substring(1, end) : tag;
+    }
+    int end = tag.indexOf('[');
+    return end > 0 ? tag.substring(0, end) : tag;
+  }
+
+  /**
+   * @return the lowest level of all tags, nothing below it is ever logged
+   */
+  public int lowestPriority() {
+    return lowestLevel;
+  }
+
+  /**
+   * Trie node over the chars of the prefixes, children sorted by char
+   */
+  private static final class Node {
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final char[] NO_KEYS = new char[0];
+
+    char[] keys = NO_KEYS;
+    Node[] children = NO_CHILDREN;
+    @Nullable
+    Integer level;
+
+    static Node build(@NonNull List<String> prefixes, @NonNull List<Integer> levels) {
+      Node root = new Node();
+      for (int i = 0; i < prefixes.size(); i++) {
+        String prefix = prefixes.get(i);
+        Node node = root;
+        for (int c = 0; c < prefix.length(); c++) {
+          node = node.childOrCreate(prefix.charAt(c));
+        }
+        node.level = levels.get(i);
+      }
+      return root;
+    }
+
+    boolean isEmpty() {
+      return children.length == 0 && level == null;
+    }
+
+    int longestMatch(@NonNull String tag, int fallback) {
+      int match = level != null ? level : fallback;
+      Node node = this;
+      for (int i = 0; i < tag.length(); i++) {
+        node = node.child(tag.charAt(i));
+        if (node == null) {
+          break;
+        }
+        if (node.level != null) {
+          match = node.level;
+        }
+      }
+      return match;
+    }
+
+    @Nullable
+    private Node child(char c) {
+      int index = Arrays.binarySearch(keys, c);
+      return index >= 0 ? children[index] : null;
+    }
+
+    @NonNull
+    private Node childOrCreate(char c) {
+      int index = Arrays.binarySearch(keys, c);
+      if (index >= 0) {
+        return children[index];
+      }
+      int insert = -index - 1;
+      char[] newKeys = new char[keys.length + 1];
+      Node[] newChildren = new Node[children.length + 1];
+      System.arraycopy(keys, 0, newKeys, 0, insert);
+      System.arraycopy(children, 0, newChildren, 0, insert);
+      System.arraycopy(keys, insert, newKeys, insert + 1, keys.length - insert);
+      System.arraycopy(children, insert, newChildren, insert + 1, children.length - insert);
+      Node child = new Node();
+      newKeys[insert] = c;
+      newChildren[insert] = child;
+      keys = newKeys;
+      children = newChildren;
+      return child;
+    }
+  }
+
+  public static final class Builder {
+
+    int defaultLevel = Logger.VERBOSE;
+    final Map<String, Integer> tags = new HashMap<>();
+    final List<String> prefixes = new ArrayList<>();
+    final List<Integer> prefixLevels = new ArrayList<>();
+
+    private Builder() {
+    }
+
+    /**
+     * Level of tags without an own entry, and of logs without a tag
+     */
+    @NonNull
+    public Builder defaultLevel(int level) {
+      defaultLevel = level;
+      return this;
+    }
+
+    @NonNull
+    public Builder tag(@NonNull String tag, int level) {
+      tags.put(Utils.checkNotNull(tag), level);
+      return this;
+    }
+
+    /**
+     * Applies to every tag starting with the prefix, unless a longer prefix or the exact tag
+     * has an entry.
+     */
+    @NonNull
+    public Builder tagPrefix(@NonNull String prefix, int level) {
+      prefixes.add(Utils.checkNotNull(prefix));
+      prefixLevels.add(level);
+      return this;
+    }
+
+    @NonNull
+    public TagLevels build() {
+      return new TagLevels(this);
+    }
+  }
+}
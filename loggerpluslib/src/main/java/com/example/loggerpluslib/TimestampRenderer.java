@@ -0,0 +1,106 @@
+package com.example.loggerpluslib;
+
+import androidx.annotation.NonNull;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+
+/**
+ * Formats timestamps with a {@link SimpleDateFormat} pattern, formatting at most once per second.
+ *
+ * <p>The text of the current second is cached. For patterns ending with the milliseconds
+ * ("SSS") only the three digits are patched in, so most calls just copy the cached prefix.
+ * Safe to call from several threads without a lock: the cache is one immutable entry which is
+ * replaced as a whole, and each thread formats with its own copy of the pattern.</p>
+ */
+final class TimestampRenderer {
+
+  private static final String MILLIS_FIELD = "SSS";
+
+  /**
+   * Length of the time span one cached text stays valid for
+   */
+  private final long granularityMillis;
+  private final boolean patchMillis;
+
+  @NonNull
+  private final ThreadLocal<SimpleDateFormat> formats;
+
+  @NonNull
+  private volatile Cached cached = new Cached(Long.MIN_VALUE, "");
+
+  TimestampRenderer(@NonNull SimpleDateFormat format) {
+    String pattern = Utils.checkNotNull(format).toPattern();
+    String prefixPattern = pattern;
+    if (pattern.endsWith(MILLIS_FIELD) && pattern.indexOf('S') == pattern.length() - MILLIS_FIELD.length()) {
+      patchMillis = true;
+      granularityMillis = 1000;
+      prefixPattern = pattern.substring(0, pattern.length() - MILLIS_FIELD.length());
+    } else {
+      patchMillis = false;
+      // milliseconds somewhere else in the pattern: cached per millisecond only
+      granularityMillis = pattern.indexOf('S') >= 0 ? 1 : 1000;
+    }
+    final SimpleDateFormat prefixFormat = (SimpleDateFormat) format.clone();
+    prefixFormat.applyPattern(prefixPattern);
+    formats = new ThreadLocal<SimpleDateFormat>() {
+      @Override
+      protected SimpleDateFormat initialValue() {
+        return (SimpleDateFormat) prefixFormat.clone();
+      }
+    };
+  }
+
+  /**
+   * Appends the formatted timestamp without allocating, apart from once per second.
+   */
+  void appendTo(@NonNull StringBuilder out, long millis) {
+    long key = floorDiv(millis, granularityMillis);
+    Cached entry = cached;
+    if (entry.key != key) {
+      entry = new Cached(key, formats.get().format(new Date(key * granularityMillis)));
+      cached = entry;
+    }
+    out.append(entry.text);
+    if (patchMillis) {
+      int ms = (int) (millis - key * granularityMillis);
+      out.append((char) ('0' + ms / 100))
+          .append((char) ('0' + ms / 10 % 10))
+          .append((char) ('0' + ms % 10));
+    }
+  }
+
+  /**
+   * @return the formatted timestamp, the cached String itself for patterns without milliseconds
+   */
+  @NonNull
+  String format(long millis) {
+    if (!patchMillis) {
+      long key = floorDiv(millis, granularityMillis);
+      Cached entry = cached;
+      if (entry.key == key) {
+        return entry.text;
+      }
+    }
+    StringBuilder builder = new StringBuilder(32);
+    appendTo(builder, millis);
+    return builder.toString();
+  }
+
+  private static long floorDiv(long x, long y) {
+    long q = x / y;
+    return (x % y != 0 && (x < 0) != (y < 0)) ? q - 1 : q;
+  }
+
+  private static final class Cached {
+    final long key;
+    @NonNull
+    final String text;
+
+    Cached(long key, @NonNull String text) {
+      this.key = key;
+      this.text = text;
+    }
+  }
+}
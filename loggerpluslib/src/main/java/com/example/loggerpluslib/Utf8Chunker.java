@@ -0,0 +1,85 @@
+package com.example.loggerpluslib;
+
+import androidx.annotation.NonNull;
+
+
+/**
+ * Cuts text into chunks of at most a number of UTF-8 bytes, without encoding it.
+ *
+ * <p>The bytes are counted while scanning the chars. A chunk never ends inside a surrogate pair,
+ * and ends at the last line break inside it if there is one, so that logcat shows whole lines
+ * and multibyte characters such as Chinese are not broken.</p>
+ *
+ * <pre><code>
+ *   int start = 0;
+ *   while (start &lt; message.length()) {
+ *     int end = Utf8Chunker.chunkEnd(message, start, message.length(), CHUNK_SIZE);
+ *     print(message.substring(start, end));
+ *     start = Utf8Chunker.nextStart(message, end);
+ *   }
+ * </code></pre>
+ */
+final class Utf8Chunker {
+
+  private Utf8Chunker() {
+  }
+
+  /**
+   * @return end (exclusive) of the chunk starting at {@code start}, at least one code point
+   * further even if that is longer than {@code maxBytes}
+   */
+  static int chunkEnd(@NonNull CharSequence text, int start, int end, int maxBytes) {
+    int bytes = 0;
+    int lastLineBreak = -1;
+    int i = start;
+    while (i < end) {
+      char c = text.charAt(i);
+      int charCount = 1;
+      int charBytes;
+      if (c < 0x80) {
+        charBytes = 1;
+      } else if (c < 0x800) {
+        charBytes = 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+        charBytes = 4;
+        charCount = 2;
+      } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+        // a lone surrogate is encoded as '?'
+        charBytes = 1;
+      } else {
+        charBytes = 3;
+      }
+      if (bytes + charBytes > maxBytes) {
+        if (i == start) {
+          return i + charCount;
+        }
+        break;
+      }
+      if (c == '\n') {
+        lastLineBreak = i;
+      }
+      bytes += charBytes;
+      i += charCount;
+    }
+    if (i < end && lastLineBreak > start) {
+      return lastLineBreak;
+    }
+    return i;
+  }
+
+  /**
+   * @return start of the chunk after the one ending at {@code chunkEnd}, skipping the line
+   * break the chunk was cut at
+   */
+  static int nextStart(@NonNull CharSequence text, int chunkEnd) {
+    return chunkEnd < text.length() && text.charAt(chunkEnd) == '\n' ? chunkEnd + 1 : chunkEnd;
+  }
+
+  /**
+   * @return true if the text may be longer than {@code maxBytes}, false if it surely is not
+   */
+  static boolean mayExceed(@NonNull CharSequence text, int maxBytes) {
+    // no char takes more than 3 bytes, a surrogate pair takes 4 for 2 chars
+    return text.length() * 3L > maxBytes;
+  }
+}
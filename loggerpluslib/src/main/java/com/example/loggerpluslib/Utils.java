@@ -7,6 +7,9 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.UnknownHostException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -19,6 +22,14 @@ final class Utils {
    */
   private static final int MIN_STACK_OFFSET = 2;//
 
+  private static final String LOGGER_CLASS_NAME = Logger.class.getName();
+  private static final String LOG_EVENT_CLASS_NAME = LogEvent.class.getName();
+
+  /**
+   * Classes wrapping Logger, their frames are skipped when looking for the caller
+   */
+  private static final Set<String> wrapperClasses =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
 
   private Utils() {
@@ -93,6 +104,30 @@ final class Utils {
     return sw.toString();
   }
 
+  /**
+   * @return number of bytes of the chars between start and end in UTF-8, a lone surrogate
+   * counts as the single byte of its '?' replacement
+   */
+  static int utf8Length(@NonNull CharSequence value, int start, int end) {
+    int bytes = 0;
+    for (int i = start; i < end; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        bytes++;
+      } else if (c < 0x800) {
+        bytes += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(value.charAt(i + 1))) {
+        bytes += 4;
+        i++;
+      } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+        bytes++;
+      } else {
+        bytes += 3;
+      }
+    }
+    return bytes;
+  }
+
   static String logLevel(int value) {
     switch (value) {
       case Logger.VERBOSE:
@@ -158,12 +193,54 @@ final class Utils {
   }
 
 
+  /**
+   * Returns the thread which logged the message being processed. When called on the
+   * {@link LogDispatcher} consumer thread this is the original caller, not the consumer.
+   */
+  @NonNull
+  static Thread callerThread() {
+    Thread current = Thread.currentThread();
+    if (current instanceof LogDispatcher.DispatchThread) {
+      Thread origin = ((LogDispatcher.DispatchThread) current).origin;
+      if (origin != null) {
+        return origin;
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Returns the method stack of the thread which logged the message being processed.
+   *
+   * @see #callerThread()
+   */
+  @NonNull
+  static StackTraceElement[] callerStackTrace() {
+    Thread current = Thread.currentThread();
+    if (current instanceof LogDispatcher.DispatchThread) {
+      StackTraceElement[] stack = ((LogDispatcher.DispatchThread) current).stack;
+      if (stack != null) {
+        return stack;
+      }
+    }
+    return current.getStackTrace();
+  }
+
+
+  static void addWrapperClass(@NonNull String className) {
+    wrapperClasses.add(checkNotNull(className));
+  }
+
   /**
    * 获取外部调用打Log时的方法栈
-   * @return
+   *
+   * <p>Walks the whole stack on every call, Android has no StackWalker to stop at the caller's
+   * frame. Calls rewritten by the build plugin pass their tag to {@link Logger#injectedLog} and
+   * skip this.</p>
    */
   static StackTraceElement getStackTraceElement() {
-    StackTraceElement[] trace = Thread.currentThread().getStackTrace();
+    // Throwable只抓取当前线程的栈，比Thread.getStackTrace()少走VMStack的那几层
+    StackTraceElement[] trace = new Throwable().getStackTrace();
     int index = getStackIndex(trace);
     //防止数组下标越界
     if(index < 0 || index >= trace.length){
@@ -187,14 +264,23 @@ final class Utils {
 
 
   /**
-   * 从from开始遍历，已Logger为基准找Index
+   * 从from开始遍历，已Logger为基准找Index，并跳过注册过的封装类
    */
   private static int getIndexFrom(StackTraceElement[] trace, int from) {
     for (int i = from; i < trace.length; i++) {
-      StackTraceElement e = trace[i];
-      String name = e.getClassName();
-      if(name.equals(Logger.class.getName())){
-        return i + Logger.layerNum + 1;
+      String name = trace[i].getClassName();
+      if(name.equals(LOGGER_CLASS_NAME)){
+        int index = i + 1;
+        // LogEvent.log() calls Logger on behalf of the caller
+        while (index < trace.length - 1 && trace[index].getClassName().equals(LOG_EVENT_CLASS_NAME)) {
+          index++;
+        }
+        if (!wrapperClasses.isEmpty()) {
+          while (index < trace.length - 1 && wrapperClasses.contains(trace[index].getClassName())) {
+            index++;
+          }
+        }
+        return index;
       }
     }
     return 0;
@@ -0,0 +1,149 @@
+package com.example.loggerpluslib;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trip of {@link BinaryLogEncoder} and {@link BinaryLogDecoder}, including torn records.
+ */
+public class BinaryLogCodecTest {
+
+    private static final long BASE = 1594108800000L;
+
+    @Test
+    public void roundTrip() throws IOException {
+        BinaryLogEncoder encoder = new BinaryLogEncoder();
+        encoder.startSegment(BASE);
+        encoder.encode(BASE + 5, Logger.INFO, "Main[onCreate][12]", "main", "first");
+        encoder.encode(BASE + 3, Logger.ERROR, null, "worker", "line 1\nline \"2\"");
+        encoder.startSegment(BASE + 100);
+        encoder.encode(BASE + 100, Logger.DEBUG, "Main[onCreate][12]", "main", "中文 😀");
+
+        String json = decode(bytes(encoder), true);
+
+        assertEquals(Arrays.asList(
+                "{\"time\":1594108800005,\"date\":\"" + date(BASE + 5) + "\",\"level\":\"I\","
+                        + "\"tag\":\"Main[onCreate][12]\",\"thread\":\"main\",\"message\":\"first\"}",
+                "{\"time\":1594108800003,\"date\":\"" + date(BASE + 3) + "\",\"level\":\"E\","
+                        + "\"tag\":null,\"thread\":\"worker\",\"message\":\"line 1\\nline \\\"2\\\"\"}",
+                "{\"time\":1594108800100,\"date\":\"" + date(BASE + 100) + "\",\"level\":\"D\","
+                        + "\"tag\":\"Main[onCreate][12]\",\"thread\":\"main\",\"message\":\"中文 😀\"}"),
+                Arrays.asList(json.split("\n")));
+    }
+
+    @Test
+    public void truncatedLastRecordIsSkipped() throws IOException {
+        BinaryLogEncoder encoder = new BinaryLogEncoder();
+        encoder.startSegment(BASE);
+        encoder.encode(BASE, Logger.INFO, "tag", "main", "kept");
+        int end = encoder.size();
+        encoder.encode(BASE, Logger.INFO, "tag", "main", "torn message");
+        byte[] file = bytes(encoder);
+
+        assertEquals(Arrays.asList("kept"), messages(Arrays.copyOf(file, file.length - 4)));
+        assertEquals(Arrays.asList("kept"), messages(Arrays.copyOf(file, end + 1)));
+    }
+
+    /**
+     * The torn record claims more bytes than were written, so it swallows the whole next segment
+     */
+    @Test
+    public void tornRecordBeforeShortSegment() throws IOException {
+        assertEquals(Arrays.asList("a1", "a2", "b1", "b2"), messages(tornThenSegment(2)));
+    }
+
+    /**
+     * The torn record swallows the start of the next segment, decoding goes on in the middle of it
+     */
+    @Test
+    public void tornRecordBeforeLongSegment() throws IOException {
+        assertEquals(200 + 2, messages(tornThenSegment(200)).size());
+    }
+
+    @Test
+    public void garbageBetweenSegmentsIsSkipped() throws IOException {
+        BinaryLogEncoder encoder = new BinaryLogEncoder();
+        encoder.startSegment(BASE);
+        encoder.encode(BASE, Logger.WARN, "tag", "main", "a1");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.writeTo(out);
+        out.write(new byte[]{39, 'L', 'P', 0, (byte) 0xFF});
+        encoder.startSegment(BASE);
+        encoder.encode(BASE, Logger.WARN, "tag", "main", "b1");
+        encoder.writeTo(out);
+
+        assertEquals(Arrays.asList("a1", "b1"), messages(out.toByteArray()));
+    }
+
+    @Test(expected = IOException.class)
+    public void notABinaryLog() throws IOException {
+        decode("2020.07.07,I,tag,message\n".getBytes("UTF-8"), false);
+    }
+
+    @Test
+    public void emptyInput() throws IOException {
+        assertEquals("", decode(new byte[0], false));
+    }
+
+    /**
+     * Segment "a" with two logs and a torn third one, followed by segment "b"
+     */
+    private static byte[] tornThenSegment(int logsOfB) throws IOException {
+        BinaryLogEncoder encoder = new BinaryLogEncoder();
+        encoder.startSegment(BASE);
+        encoder.encode(BASE, Logger.INFO, "tag", "main", "a1");
+        encoder.encode(BASE + 1, Logger.INFO, "tag", "main", "a2");
+        int end = encoder.size();
+        char[] longMessage = new char[500];
+        Arrays.fill(longMessage, 'x');
+        encoder.encode(BASE + 2, Logger.INFO, "tag", "main", new String(longMessage));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(bytes(encoder), 0, end + 20);
+
+        encoder.startSegment(BASE + 10);
+        encoder.encode(BASE + 10, Logger.INFO, "tag", "main", "b1");
+        for (int i = 2; i < logsOfB; i++) {
+            encoder.encode(BASE + 10 + i, Logger.INFO, "other", "worker", "b" + i);
+        }
+        encoder.encode(BASE + 10 + logsOfB, Logger.INFO, "tag", "main", "b" + logsOfB);
+        encoder.writeTo(out);
+        return out.toByteArray();
+    }
+
+    private static byte[] bytes(BinaryLogEncoder encoder) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.writeTo(out);
+        return out.toByteArray();
+    }
+
+    private static java.util.List<String> messages(byte[] file) throws IOException {
+        java.util.List<String> messages = new java.util.ArrayList<>();
+        String json = decode(file, true);
+        if (json.isEmpty()) {
+            return messages;
+        }
+        for (String line : json.split("\n")) {
+            int start = line.indexOf("\"message\":\"") + "\"message\":\"".length();
+            messages.add(line.substring(start, line.length() - 2));
+        }
+        return messages;
+    }
+
+    private static String decode(byte[] file, boolean json) throws IOException {
+        StringWriter out = new StringWriter();
+        new BinaryLogDecoder(json).decode(new ByteArrayInputStream(file), out);
+        return out.toString();
+    }
+
+    private static String date(long millis) {
+        return new java.text.SimpleDateFormat("yyyy.MM.dd HH:mm:ss.SSS", java.util.Locale.UK)
+                .format(new java.util.Date(millis));
+    }
+}
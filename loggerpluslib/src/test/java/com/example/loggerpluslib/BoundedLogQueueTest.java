@@ -0,0 +1,189 @@
+package com.example.loggerpluslib;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link BoundedLogQueue} with {@link OverflowPolicy#SPILL_TO_DISK}: nothing is dropped while the
+ * spill thread is behind, spilled logs are replayed and everything arrives in order.
+ */
+public class BoundedLogQueueTest {
+
+    private static final int CAPACITY = 4;
+
+    private File folder;
+    private File spillFile;
+
+    /**
+     * Stands in for the spill thread, its work only runs when the test says so
+     */
+    private final List<Runnable> spillTasks = new ArrayList<>();
+    private final Executor spillExecutor = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            spillTasks.add(task);
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("BoundedLogQueueTest", "");
+        assertTrue(folder.delete() && folder.mkdir());
+        spillFile = new File(folder, "logs.spill");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    @Test
+    public void dropsNothingWhileTheSpillThreadIsBehind() throws IOException {
+        BoundedLogQueue queue = newQueue();
+
+        List<String> expected = offer(queue, 0, 50);
+
+        assertEquals(0, queue.droppedCount(Logger.DEBUG));
+        assertEquals(expected, deliver(queue));
+    }
+
+    @Test
+    public void callerAppendsToTheSpillFileOnceTheLimitsAreUsedUp() throws IOException {
+        BoundedLogQueue queue = newQueue();
+
+        offer(queue, 0, CAPACITY + 1);
+        // the queue is full, so only one log may wait for the spill thread
+        assertFalse(spillFile.exists());
+        offer(queue, CAPACITY + 1, CAPACITY + 2);
+
+        assertEquals("4\n5\n", read(spillFile));
+    }
+
+    @Test
+    public void spillThreadAndWriterKeepTheOrder() throws IOException {
+        BoundedLogQueue queue = newQueue();
+
+        List<String> expected = new ArrayList<>();
+        expected.addAll(offer(queue, 0, 6));
+        runSpillTasks();
+        expected.addAll(offer(queue, 6, 9));
+        // taken over by the writer with one log still waiting for the spill thread
+        List<String> delivered = deliver(queue);
+        runSpillTasks();
+        expected.addAll(offer(queue, 9, 12));
+        delivered.addAll(deliver(queue));
+
+        assertEquals(expected, delivered);
+        assertEquals(0, queue.droppedCount(Logger.DEBUG));
+        assertFalse(queue.replayFile().exists());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void replaysASpillFileLeftByAPreviousProcess() throws IOException {
+        OutputStream out = new FileOutputStream(spillFile);
+        out.write("old 1\nold 2\n".getBytes("UTF-8"));
+        out.close();
+        BoundedLogQueue queue = newQueue();
+
+        assertTrue(queue.recoverSpill());
+
+        assertFalse(spillFile.exists());
+        assertEquals("old 1\nold 2\n", read(queue.replayFile()));
+    }
+
+    @Test
+    public void nothingToRecover() {
+        assertFalse(newQueue().recoverSpill());
+    }
+
+    private BoundedLogQueue newQueue() {
+        return new BoundedLogQueue(CAPACITY, 1024 * 1024, OverflowPolicy.SPILL_TO_DISK,
+                100, TimeUnit.MILLISECONDS, spillFile, spillExecutor);
+    }
+
+    /**
+     * Offers the logs {@code from} to {@code to - 1}, one line each.
+     *
+     * @return the expected lines
+     */
+    private static List<String> offer(BoundedLogQueue queue, int from, int to) {
+        List<String> lines = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            assertTrue(queue.offer(Logger.DEBUG, i + "\n"));
+            lines.add(String.valueOf(i));
+        }
+        return lines;
+    }
+
+    private void runSpillTasks() {
+        List<Runnable> tasks = new ArrayList<>(spillTasks);
+        spillTasks.clear();
+        for (Runnable task : tasks) {
+            task.run();
+        }
+    }
+
+    /**
+     * Takes everything over like the writer of {@link DiskLogStrategy}: the queued logs, then the
+     * replayed spill file, then the logs the spill thread did not write yet.
+     */
+    private static List<String> deliver(BoundedLogQueue queue) throws IOException {
+        StringBuilder text = new StringBuilder();
+        ArrayDeque<BoundedLogQueue.Record> unspilled = new ArrayDeque<>();
+        for (BoundedLogQueue.Record record : queue.drain(new ArrayDeque<BoundedLogQueue.Record>(), unspilled)) {
+            text.append(record.message);
+        }
+        File replayFile = queue.replayFile();
+        if (replayFile.exists()) {
+            text.append(read(replayFile));
+            assertTrue(replayFile.delete());
+        }
+        for (BoundedLogQueue.Record record : unspilled) {
+            text.append(record.message);
+        }
+        List<String> lines = new ArrayList<>();
+        if (text.length() > 0) {
+            lines.addAll(Arrays.asList(text.toString().split("\n")));
+        }
+        return lines;
+    }
+
+    private static String read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, count);
+            }
+            return bytes.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
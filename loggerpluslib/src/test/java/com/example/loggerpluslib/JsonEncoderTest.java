@@ -0,0 +1,95 @@
+package com.example.loggerpluslib;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link JsonEncoder}: escaping, special values and nested fields.
+ */
+public class JsonEncoderTest {
+
+    @Test
+    public void escapesQuotesBackslashesAndControlChars() {
+        String line = JsonEncoder.get().begin()
+                .field("m", "a\"b\\c\nd\re\tf\u0000g\u001fh\u007fi")
+                .end("");
+        // DEL is not a control char in JSON and stays as it is
+        assertEquals("{\"m\":\"a\\\"b\\\\c\\nd\\re\\tf\\u0000g\\u001fh\u007fi\"}", line);
+    }
+
+    @Test
+    public void escapesLineAndParagraphSeparators() {
+        String line = JsonEncoder.get().begin().field("m", "a\u2028b\u2029c").end("\n");
+        assertEquals("{\"m\":\"a\\u2028b\\u2029c\"}\n", line);
+    }
+
+    @Test
+    public void keepsOtherUnicodeAsItIs() {
+        String line = JsonEncoder.get().begin().field("m", "中文 😀 é").end("");
+        assertEquals("{\"m\":\"中文 😀 é\"}", line);
+    }
+
+    @Test
+    public void nullStringsAreNull() {
+        String line = JsonEncoder.get().begin().field("tag", (String) null).field("m", "x").end("");
+        assertEquals("{\"tag\":null,\"m\":\"x\"}", line);
+    }
+
+    @Test
+    public void nonFiniteNumbersAreNull() {
+        String line = JsonEncoder.get().begin()
+                .field("nan", Double.NaN)
+                .field("inf", Double.POSITIVE_INFINITY)
+                .field("neg", Double.NEGATIVE_INFINITY)
+                .field("d", 1.5)
+                .field("l", Long.MIN_VALUE)
+                .field("b", true)
+                .end("");
+        assertEquals("{\"nan\":null,\"inf\":null,\"neg\":null,\"d\":1.5,\"l\":-9223372036854775808,\"b\":true}", line);
+    }
+
+    @Test
+    public void nestedFields() {
+        LogFields fields = new LogFields();
+        fields.addLong("uid", 42);
+        fields.addDouble("ratio", Double.NaN);
+        fields.addBoolean("ok", false);
+        fields.addString("path", "/a \"b\"\n");
+        fields.addString("none", null);
+
+        String line = JsonEncoder.get().begin()
+                .field("level", "I")
+                .fields("fields", fields)
+                .field("message", "done")
+                .end("");
+        assertEquals("{\"level\":\"I\",\"fields\":{\"uid\":42,\"ratio\":null,\"ok\":false,"
+                + "\"path\":\"/a \\\"b\\\"\\n\",\"none\":null},\"message\":\"done\"}", line);
+    }
+
+    @Test
+    public void fieldsFirstAndEmpty() {
+        LogFields fields = new LogFields();
+        fields.addLong("n", 1);
+        assertEquals("{\"f\":{\"n\":1},\"m\":\"x\"}",
+                JsonEncoder.get().begin().fields("f", fields).field("m", "x").end(""));
+        assertEquals("{\"m\":\"x\"}",
+                JsonEncoder.get().begin().fields("f", new LogFields()).field("m", "x").end(""));
+        assertEquals("{\"m\":\"x\"}",
+                JsonEncoder.get().begin().field("m", "x").fields("f", null).end(""));
+    }
+
+    @Test
+    public void escapesNames() {
+        assertEquals("{\"a\\\"b\":1}", JsonEncoder.get().begin().field("a\"b", 1).end(""));
+    }
+
+    @Test
+    public void beginDiscardsThePreviousObject() {
+        JsonEncoder encoder = JsonEncoder.get();
+        char[] large = new char[20000];
+        java.util.Arrays.fill(large, 'x');
+        encoder.begin().field("m", new String(large)).end("");
+        assertEquals("{}", encoder.begin().end(""));
+    }
+}
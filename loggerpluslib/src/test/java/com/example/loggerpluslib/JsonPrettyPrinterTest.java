@@ -0,0 +1,143 @@
+package com.example.loggerpluslib;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link JsonPrettyPrinter}: indentation, limits and invalid json.
+ */
+public class JsonPrettyPrinterTest {
+
+    private final List<String> chunks = new ArrayList<>();
+
+    @Test
+    public void indentsNestedContainers() {
+        assertNull(print("{\"a\":[1,{\"b\":null}],\"c\":\"x\"}", JsonPrettyPrinter.UNLIMITED, JsonPrettyPrinter.UNLIMITED));
+        assertEquals("{\n"
+                + "  \"a\": [\n"
+                + "    1,\n"
+                + "    {\n"
+                + "      \"b\": null\n"
+                + "    }\n"
+                + "  ],\n"
+                + "  \"c\": \"x\"\n"
+                + "}", output());
+    }
+
+    @Test
+    public void emptyContainers() {
+        assertNull(print(" {\"a\":{},\"b\":[],\"c\":[[]]} ", JsonPrettyPrinter.UNLIMITED, JsonPrettyPrinter.UNLIMITED));
+        assertEquals("{\n"
+                + "  \"a\": {},\n"
+                + "  \"b\": [],\n"
+                + "  \"c\": [\n"
+                + "    []\n"
+                + "  ]\n"
+                + "}", output());
+    }
+
+    @Test
+    public void skipsArrayElementsBeyondTheLimit() {
+        // the nested arrays of skipped elements are only validated
+        assertNull(print("[1,2,[3,4,5],[6,[7]],{\"k\":[8]}]", JsonPrettyPrinter.UNLIMITED, 2));
+        assertEquals("[\n"
+                + "  1,\n"
+                + "  2\n"
+                + "  ... 3 more\n"
+                + "]", output());
+    }
+
+    @Test
+    public void skipsInNestedArrays() {
+        assertNull(print("[[1,2,3],[4]]", JsonPrettyPrinter.UNLIMITED, 2));
+        assertEquals("[\n"
+                + "  [\n"
+                + "    1,\n"
+                + "    2\n"
+                + "    ... 1 more\n"
+                + "  ],\n"
+                + "  [\n"
+                + "    4\n"
+                + "  ]\n"
+                + "]", output());
+    }
+
+    @Test
+    public void skippedElementsAreStillValidated() {
+        assertNotNull(print("[1,2,[3,}]]", JsonPrettyPrinter.UNLIMITED, 2));
+    }
+
+    @Test
+    public void invalidNumbers() {
+        for (String number : new String[]{"01", "1.", ".5", "-", "1e", "1e+", "+1", "0x10", "NaN", "Infinity", "1.5.2", "tru"}) {
+            chunks.clear();
+            assertNotNull(number, print("[" + number + "]", JsonPrettyPrinter.UNLIMITED, JsonPrettyPrinter.UNLIMITED));
+            // fits into the first chunk, so nothing was handed out
+            assertTrue(number, chunks.isEmpty());
+        }
+        for (String number : new String[]{"0", "-0", "10", "1.5", "-0.25e-3", "2E+10", "true", "false", "null"}) {
+            assertNull(number, print("[" + number + "]", JsonPrettyPrinter.UNLIMITED, JsonPrettyPrinter.UNLIMITED));
+        }
+    }
+
+    @Test
+    public void invalidStructure() {
+        for (String json : new String[]{"{\"a\" 1}", "{\"a\":1,}", "[1 2]", "[1]]", "{\"a\":\"x}", "[1", "{1:2}", "[1]x"}) {
+            assertNotNull(json, print(json, JsonPrettyPrinter.UNLIMITED, JsonPrettyPrinter.UNLIMITED));
+        }
+    }
+
+    @Test
+    public void truncationMarker() {
+        assertNull(print("{\"key\":\"0123456789\"}", 15, JsonPrettyPrinter.UNLIMITED));
+        assertEquals("{\n  \"key\": \"012\n... truncated after 15 bytes", output());
+    }
+
+    @Test
+    public void truncationNeverSplitsASurrogatePair() {
+        // "{\n  \"k\": \"" is 10 bytes, the emoji takes 4
+        assertNull(print("{\"k\":\"a😀b\"}", 13, JsonPrettyPrinter.UNLIMITED));
+        assertEquals("{\n  \"k\": \"a\n... truncated after 13 bytes", output());
+    }
+
+    @Test
+    public void largeJsonIsHandedOutInChunks() {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 2000; i++) {
+            json.append(i).append(',');
+        }
+        json.append("0]");
+        assertNull(print(json.toString(), JsonPrettyPrinter.UNLIMITED, JsonPrettyPrinter.UNLIMITED));
+        assertTrue(chunks.size() > 1);
+        for (String chunk : chunks) {
+            assertFalse(chunk.endsWith("\n"));
+        }
+        String output = output();
+        assertTrue(output.startsWith("[\n  0,\n  1,\n"));
+        assertTrue(output.endsWith("\n  1999,\n  0\n]"));
+    }
+
+    private String print(String json, long maxBytes, int maxArrayElements) {
+        return new JsonPrettyPrinter(2, maxBytes, maxArrayElements, new JsonPrettyPrinter.Output() {
+            @Override
+            public void write(String chunk) {
+                chunks.add(chunk);
+            }
+        }).print(json);
+    }
+
+    private String output() {
+        StringBuilder builder = new StringBuilder();
+        for (String chunk : chunks) {
+            if (builder.length() > 0) {
+                builder.append('\n');
+            }
+            builder.append(chunk);
+        }
+        return builder.toString();
+    }
+}
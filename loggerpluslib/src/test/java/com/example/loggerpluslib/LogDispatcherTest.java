@@ -0,0 +1,211 @@
+package com.example.loggerpluslib;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link LogDispatcher}: order of logs, copied fields, adapters which throw and idle calls.
+ */
+public class LogDispatcherTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int LOGS_PER_PRODUCER = 20000;
+
+    /**
+     * Records the messages, only ever called on the consumer thread
+     */
+    private static class RecordingSink implements LogDispatcher.Sink {
+        final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public void dispatch(int priority, String tag, String message, Throwable throwable, LogFields fields) {
+            messages.add(fields == null ? message : message + " " + fields);
+        }
+
+        @Override
+        public long idle(boolean flushing) {
+            return -1;
+        }
+    }
+
+    @Test
+    public void keepsTheOrderOfEveryProducer() throws InterruptedException {
+        RecordingSink sink = new RecordingSink();
+        // a small ring, so that producers also wait for free slots
+        final LogDispatcher dispatcher = new LogDispatcher(sink, 64);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            final int producer = p;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < LOGS_PER_PRODUCER; i++) {
+                        dispatcher.publish(Logger.DEBUG, "tag", producer + ":" + i, null, null, null);
+                    }
+                }
+            };
+            thread.start();
+            producers.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : producers) {
+            thread.join();
+        }
+        assertTrue(dispatcher.flush(10, TimeUnit.SECONDS));
+
+        assertEquals(PRODUCERS * LOGS_PER_PRODUCER, sink.messages.size());
+        int[] next = new int[PRODUCERS];
+        for (String message : sink.messages) {
+            int colon = message.indexOf(':');
+            int producer = Integer.parseInt(message.substring(0, colon));
+            assertEquals(message, next[producer]++, Integer.parseInt(message.substring(colon + 1)));
+        }
+    }
+
+    @Test
+    public void copiesFields() {
+        RecordingSink sink = new RecordingSink();
+        LogDispatcher dispatcher = new LogDispatcher(sink);
+        LogFields fields = new LogFields();
+        fields.addLong("uid", 42);
+        fields.addString("path", "/a b");
+        dispatcher.publish(Logger.INFO, "tag", "done", null, null, fields);
+        // reused by the caller right away
+        fields.clear();
+        fields.addBoolean("other", true);
+
+        assertTrue(dispatcher.flush(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("done uid=42 path=\"/a b\""), sink.messages);
+    }
+
+    @Test
+    public void survivesAdaptersWhichThrowErrors() {
+        final RecordingSink recording = new RecordingSink();
+        LogDispatcher dispatcher = new LogDispatcher(new LogDispatcher.Sink() {
+            @Override
+            public void dispatch(int priority, String tag, String message, Throwable throwable, LogFields fields) {
+                if ("error".equals(message)) {
+                    throw new AssertionError("broken strategy");
+                }
+                if ("overflow".equals(message)) {
+                    throw new StackOverflowError();
+                }
+                if ("runtime".equals(message)) {
+                    throw new IllegalStateException();
+                }
+                recording.dispatch(priority, tag, message, throwable, fields);
+            }
+
+            @Override
+            public long idle(boolean flushing) {
+                return -1;
+            }
+        }, 4);
+
+        // more logs than slots, a dead consumer would make this block forever
+        for (String message : new String[]{"1", "error", "2", "overflow", "3", "runtime", "4", "5", "6"}) {
+            dispatcher.publish(Logger.INFO, "tag", message, null, null, null);
+        }
+
+        assertTrue(dispatcher.flush(5, TimeUnit.SECONDS));
+        assertEquals(java.util.Arrays.asList("1", "2", "3", "4", "5", "6"), recording.messages);
+    }
+
+    @Test
+    public void dispatchesInlineOnTheConsumerThread() {
+        final RecordingSink recording = new RecordingSink();
+        final LogDispatcher[] dispatcher = new LogDispatcher[1];
+        dispatcher[0] = new LogDispatcher(new LogDispatcher.Sink() {
+            @Override
+            public void dispatch(int priority, String tag, String message, Throwable throwable, LogFields fields) {
+                recording.dispatch(priority, tag, message, throwable, fields);
+                if ("outer".equals(message)) {
+                    // an adapter which logs itself
+                    dispatcher[0].publish(priority, tag, "inner", null, null, null);
+                }
+            }
+
+            @Override
+            public long idle(boolean flushing) {
+                return -1;
+            }
+        }, 2);
+        dispatcher[0].publish(Logger.INFO, "tag", "outer", null, null, null);
+        dispatcher[0].publish(Logger.INFO, "tag", "after", null, null, null);
+
+        assertTrue(dispatcher[0].flush(5, TimeUnit.SECONDS));
+        assertEquals(java.util.Arrays.asList("outer", "inner", "after"), recording.messages);
+    }
+
+    @Test
+    public void callsIdleAgainAfterTheRequestedDelay() throws InterruptedException {
+        final RecordingSink recording = new RecordingSink();
+        final CountDownLatch due = new CountDownLatch(1);
+        LogDispatcher dispatcher = new LogDispatcher(new LogDispatcher.Sink() {
+            long dueNanos;
+
+            @Override
+            public void dispatch(int priority, String tag, String message, Throwable throwable, LogFields fields) {
+                recording.dispatch(priority, tag, message, throwable, fields);
+                dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+            }
+
+            @Override
+            public long idle(boolean flushing) {
+                if (dueNanos == 0) {
+                    return -1;
+                }
+                long left = dueNanos - System.nanoTime();
+                if (left > 0) {
+                    return left;
+                }
+                // no further log arrives, still called once the delay is over
+                recording.messages.add("report");
+                dueNanos = 0;
+                due.countDown();
+                return -1;
+            }
+        });
+        dispatcher.publish(Logger.INFO, "tag", "log", null, null, null);
+
+        assertTrue(due.await(5, TimeUnit.SECONDS));
+        assertEquals(java.util.Arrays.asList("log", "report"), recording.messages);
+    }
+
+    @Test
+    public void flushCallsIdleAfterThePendingEvents() {
+        final RecordingSink recording = new RecordingSink();
+        LogDispatcher dispatcher = new LogDispatcher(new LogDispatcher.Sink() {
+            @Override
+            public void dispatch(int priority, String tag, String message, Throwable throwable, LogFields fields) {
+                recording.dispatch(priority, tag, message, throwable, fields);
+            }
+
+            @Override
+            public long idle(boolean flushing) {
+                if (flushing) {
+                    recording.messages.add("flushed");
+                }
+                return -1;
+            }
+        });
+        dispatcher.publish(Logger.INFO, "tag", "1", null, null, null);
+        dispatcher.publish(Logger.INFO, "tag", "2", null, null, null);
+
+        assertTrue(dispatcher.flush(5, TimeUnit.SECONDS));
+        assertEquals(java.util.Arrays.asList("1", "2", "flushed"), recording.messages);
+    }
+}
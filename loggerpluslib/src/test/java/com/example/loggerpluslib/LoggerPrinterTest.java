@@ -0,0 +1,82 @@
+package com.example.loggerpluslib;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link LoggerPrinter} as the sink of the dispatcher: every adapter gets the log, even if one throws.
+ */
+public class LoggerPrinterTest {
+
+    private final LoggerPrinter printer = new LoggerPrinter();
+
+    private static class RecordingAdapter extends LogAdapter {
+        final List<String> messages = new ArrayList<>();
+
+        @Override
+        void log(int priority, String tag, String message) {
+            messages.add(message);
+        }
+
+        @Override
+        boolean isLoggable(int priority, String tag) {
+            return true;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        printer.clearLogAdapters();
+    }
+
+    @Test
+    public void adapterWhichThrowsDoesNotCostTheOthersTheLog() {
+        RecordingAdapter before = new RecordingAdapter();
+        RecordingAdapter after = new RecordingAdapter();
+        printer.addAdapter(before);
+        printer.addAdapter(new LogAdapter() {
+            @Override
+            void log(int priority, String tag, String message) {
+                throw new StackOverflowError();
+            }
+
+            @Override
+            boolean isLoggable(int priority, String tag) {
+                return true;
+            }
+        });
+        printer.addAdapter(after);
+        long errors = LoggerMetrics.snapshot().getAdapterErrors();
+
+        printer.dispatch(Logger.DEBUG, "tag", "first", null, null);
+        printer.dispatch(Logger.DEBUG, "tag", "second", null, null);
+
+        assertEquals(Arrays.asList("first", "second"), before.messages);
+        assertEquals(Arrays.asList("first", "second"), after.messages);
+        assertEquals(errors + 2, LoggerMetrics.snapshot().getAdapterErrors());
+    }
+
+    @Test
+    public void adapterWhichThrowsWhenIdleDoesNotHideTheOthers() {
+        printer.addAdapter(new RecordingAdapter() {
+            @Override
+            long onIdle(boolean flushing) {
+                throw new IllegalStateException();
+            }
+        });
+        printer.addAdapter(new RecordingAdapter() {
+            @Override
+            long onIdle(boolean flushing) {
+                return 5;
+            }
+        });
+
+        assertEquals(5, printer.idle(false));
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.loggerpluslib;
+
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link Utf8Chunker} at the logcat limit: multibyte characters stay whole, line breaks are preferred.
+ */
+public class Utf8ChunkerTest {
+
+    private static final int MAX_BYTES = 4000;
+
+    @Test
+    public void twoByteCharacterStraddlingTheLimit() throws UnsupportedEncodingException {
+        // 1 + 2 * 2000 = 4001 bytes, the last "é" would end at byte 4001
+        String text = "a" + repeat("é", 2000);
+
+        List<String> chunks = chunks(text, MAX_BYTES);
+
+        assertEquals(Arrays.asList("a" + repeat("é", 1999), "é"), chunks);
+        assertEquals(3999, utf8Bytes(chunks.get(0)));
+    }
+
+    @Test
+    public void threeByteCharacterStraddlingTheLimit() throws UnsupportedEncodingException {
+        // 2 + 3 * 1333 = 4001 bytes
+        String text = "ab" + repeat("中", 1333);
+
+        List<String> chunks = chunks(text, MAX_BYTES);
+
+        assertEquals(Arrays.asList("ab" + repeat("中", 1332), "中"), chunks);
+        assertEquals(3998, utf8Bytes(chunks.get(0)));
+    }
+
+    @Test
+    public void fourByteCharacterStraddlingTheLimit() throws UnsupportedEncodingException {
+        // 3 + 4 * 1000 = 4003 bytes, a surrogate pair must not be split
+        String text = "abc" + repeat("😀", 1000);
+
+        List<String> chunks = chunks(text, MAX_BYTES);
+
+        assertEquals(Arrays.asList("abc" + repeat("😀", 999), "😀"), chunks);
+        assertEquals(3999, utf8Bytes(chunks.get(0)));
+    }
+
+    @Test
+    public void exactlyTheLimitIsOneChunk() throws UnsupportedEncodingException {
+        String text = repeat("中", 1333) + "a";
+
+        assertEquals(MAX_BYTES, utf8Bytes(text));
+        assertEquals(Arrays.asList(text), chunks(text, MAX_BYTES));
+    }
+
+    @Test
+    public void cutsAtTheLastLineBreak() {
+        String first = repeat("中", 600) + "\n" + repeat("x", 100);
+        String second = repeat("y", 2500);
+        String text = first + "\n" + second;
+
+        List<String> chunks = chunks(text, MAX_BYTES);
+
+        assertEquals(Arrays.asList(first, second), chunks);
+    }
+
+    @Test
+    public void keepsLineBreaksOfTextWhichFits() {
+        String text = "line 1\nline 2\n";
+
+        assertEquals(text.length(), Utf8Chunker.chunkEnd(text, 0, text.length(), MAX_BYTES));
+    }
+
+    @Test
+    public void cutsInsideALineLongerThanTheLimit() {
+        String text = "\n" + repeat("x", MAX_BYTES + 10);
+
+        List<String> chunks = chunks(text, MAX_BYTES);
+
+        // a line break at the start of the chunk is no place to cut
+        assertEquals(Arrays.asList("\n" + repeat("x", MAX_BYTES - 1), repeat("x", 11)), chunks);
+    }
+
+    @Test
+    public void firstCodePointLargerThanTheLimit() {
+        assertEquals(1, Utf8Chunker.chunkEnd("中文", 0, 2, 2));
+        assertEquals(2, Utf8Chunker.chunkEnd("😀😀", 0, 4, 3));
+        assertEquals(Arrays.asList("中", "文"), chunks("中文", 2));
+    }
+
+    @Test
+    public void nextStartSkipsOnlyTheLineBreak() {
+        assertEquals(2, Utf8Chunker.nextStart("a\nb", 1));
+        assertEquals(1, Utf8Chunker.nextStart("ab", 1));
+        assertEquals(2, Utf8Chunker.nextStart("ab", 2));
+    }
+
+    @Test
+    public void loneSurrogateCountsAsOneByte() {
+        String text = "\ud83d" + repeat("x", MAX_BYTES - 1);
+
+        assertEquals(text.length(), Utf8Chunker.chunkEnd(text, 0, text.length(), MAX_BYTES));
+    }
+
+    @Test
+    public void mayExceed() {
+        assertFalse(Utf8Chunker.mayExceed(repeat("中", 1333), MAX_BYTES));
+        assertTrue(Utf8Chunker.mayExceed(repeat("a", 1334), MAX_BYTES));
+    }
+
+    /**
+     * Cuts like {@link LogcatLogStrategy}, and checks that no chunk is over the limit
+     */
+    private static List<String> chunks(String text, int maxBytes) {
+        List<String> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = Utf8Chunker.chunkEnd(text, start, text.length(), maxBytes);
+            assertTrue(end > start);
+            String chunk = text.substring(start, end);
+            assertFalse(Character.isHighSurrogate(chunk.charAt(chunk.length() - 1)));
+            chunks.add(chunk);
+            start = Utf8Chunker.nextStart(text, end);
+        }
+        return chunks;
+    }
+
+    private static int utf8Bytes(String text) throws UnsupportedEncodingException {
+        return text.getBytes("UTF-8").length;
+    }
+
+    private static String repeat(String value, int count) {
+        StringBuilder builder = new StringBuilder(value.length() * count);
+        for (int i = 0; i < count; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+}